@@ -0,0 +1,73 @@
+package org.tetris.simple.Network;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**Benchmarks of the forward pass, once per candidate and batched over all candidates of a piece.*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NetworkBenchmark {
+    // 10 columns with 4 rotations each
+    private static final int candidates = 40;
+
+    private NeuralNetwork neuralNetwork;
+    private final double[] input = new double[5];
+    private final double[] batch = new double[5 * candidates];
+    private final double[] scores = new double[candidates];
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        neuralNetwork = new NeuralNetwork(5, 4, 1, 1);
+        for (Weights matrix : neuralNetwork.networkMatrix) {
+            for (int i = 0; i < matrix.rows; i++) {
+                for (int j = 0; j < matrix.cols; j++) {
+                    matrix.set(i, j, random.nextDouble(-1d, 1d));
+                }
+            }
+        }
+        // plausible board features: holes, min/max height, height difference, lines cleared
+        for (int b = 0; b < candidates; b++) {
+            batch[b] = random.nextInt(20);
+            batch[candidates + b] = random.nextInt(10);
+            batch[2 * candidates + b] = 10 + random.nextInt(8);
+            batch[3 * candidates + b] = random.nextInt(40);
+            batch[4 * candidates + b] = random.nextInt(2);
+        }
+        for (int k = 0; k < input.length; k++) {
+            input[k] = batch[k * candidates];
+        }
+    }
+
+    @Benchmark
+    public double[] calculateOutputLayer() {
+        return neuralNetwork.calculateOutputLayer(input);
+    }
+
+    @Benchmark
+    public double evaluate() {
+        return neuralNetwork.evaluate(input);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(candidates)
+    public double[] evaluatePerCandidate() {
+        for (int b = 0; b < candidates; b++) {
+            for (int k = 0; k < input.length; k++) {
+                input[k] = batch[k * candidates + b];
+            }
+            scores[b] = neuralNetwork.evaluate(input);
+        }
+        return scores;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(candidates)
+    public double[] evaluateBatch() {
+        neuralNetwork.evaluateBatch(batch, candidates, candidates, scores);
+        return scores;
+    }
+}
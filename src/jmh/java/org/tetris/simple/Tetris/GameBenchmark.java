@@ -0,0 +1,83 @@
+package org.tetris.simple.Tetris;
+
+import org.openjdk.jmh.annotations.*;
+import org.tetris.simple.Network.NeuralNetwork;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**Benchmarks of the move search and of a whole game. The network weights and the piece sequence are seeded,
+ * so every run plays exactly the same game.*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+public class GameBenchmark {
+    private static final long networkSeed = 15;
+    private static final long pieceSeed = 42;
+    // boards of the seeded game the cache benchmarks search, one per placed piece
+    private static final int boardCount = 64;
+    private static final int cacheSize = 4096;
+
+    private NeuralNetwork neuralNetwork;
+    // INFO: searching the same board over and over would only measure cache hits, so this game has no cache
+    private Game search;
+    private Game cachedSearch, uncachedSearch;
+    private Well[] boards;
+
+    @Setup
+    public void setup() {
+        neuralNetwork = new NeuralNetwork(5, 4, 1, 1);
+        double[] genome = new double[neuralNetwork.genomeLength()];
+        Random random = new Random(networkSeed);
+        for (int i = 0; i < genome.length; i++) {
+            genome[i] = random.nextDouble(-1d, 1d);
+        }
+        neuralNetwork.loadGenome(genome);
+        search = new Game(neuralNetwork, new Random(pieceSeed), 0);
+
+        // the first pieces of the seeded game, each board together with the piece that is placed on it next
+        Game game = new Game(neuralNetwork, new Random(pieceSeed));
+        Replay replay = new Replay(0, 0);
+        game.record(replay);
+        game.play();
+        boards = new Well[Math.min(boardCount, replay.length())];
+        for (int i = 0; i < boards.length; i++) {
+            boards[i] = replay.frame(i);
+        }
+        cachedSearch = new Game(neuralNetwork, new Random(pieceSeed), cacheSize);
+        uncachedSearch = new Game(neuralNetwork, new Random(pieceSeed), 0);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void movesForBestPiece() {
+        search.movesForBestPiece();
+    }
+
+    /**Searches every board of the game prefix with a cache that lives across invocations. After the first pass
+     * every board is a hit, so this measures the cost of lookups and deduplication over different boards.*/
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void cachedMovesOverGamePrefix() {
+        for (Well board : boards) {
+            cachedSearch.well.copyFrom(board);
+            cachedSearch.movesForBestPiece();
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void uncachedMovesOverGamePrefix() {
+        for (Well board : boards) {
+            uncachedSearch.well.copyFrom(board);
+            uncachedSearch.movesForBestPiece();
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int fullGame() {
+        Game game = new Game(neuralNetwork, new Random(pieceSeed));
+        game.play();
+        return game.well.lifeTime;
+    }
+}
@@ -0,0 +1,82 @@
+package org.tetris.simple.Tetris;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.tetris.simple.Utils.TetrisColors.COLOR_2;
+
+/**Micro benchmarks of the board operations that run for every candidate of the move search.*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WellBenchmark {
+    private Well board, fullRows, scratch;
+    private final double[] features = new double[FeatureExtractor.FEATURE_COUNT];
+
+    @Setup
+    public void setup() {
+        // a ragged mid-game stack, built from seeded drops so every run sees the same board
+        board = new Well(10, 20, COLOR_2.color);
+        Random random = new Random(42);
+        for (int i = 0; i < 20; i++) {
+            board.currentPiece = random.nextInt(7);
+            int x = random.nextInt(10), rotation = random.nextInt(4);
+            if (!board.doesntCollideAt(x, 2, rotation)) {
+                continue;
+            }
+            int y = 2;
+            while (board.doesntCollideAt(x, y + 1, rotation)) {
+                y++;
+            }
+            board.lockPiece(x, y, rotation);
+        }
+
+        // four full rows at the bottom below a few partial ones, the worst case of clearRows
+        fullRows = new Well(10, 20, COLOR_2.color);
+        for (int j = 12; j < 20; j++) {
+            fullRows.rows[j] = j >= 16 ? fullRows.fullRow : random.nextInt(fullRows.fullRow);
+        }
+
+        scratch = board.copy();
+    }
+
+    @Benchmark
+    public void doesntCollideAt(Blackhole blackhole) {
+        // the spawn test of every (x, rotation) candidate of every piece
+        for (int piece = 0; piece < 7; piece++) {
+            board.currentPiece = piece;
+            for (int x = 0; x < 10; x++) {
+                for (int rotation = 0; rotation < 4; rotation++) {
+                    blackhole.consume(board.doesntCollideAt(x, 2, rotation));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public long clearRows() {
+        scratch.copyFrom(fullRows);
+        scratch.clearRows();
+        return scratch.linesCleared;
+    }
+
+    @Benchmark
+    public Well copy() {
+        return board.copy();
+    }
+
+    @Benchmark
+    public Well copyFrom() {
+        scratch.copyFrom(board);
+        return scratch;
+    }
+
+    @Benchmark
+    public double[] extractFeatures() {
+        FeatureExtractor.extract(board, 0, features);
+        return features;
+    }
+}
@@ -0,0 +1,130 @@
+package org.tetris.simple.Island;
+
+import lombok.extern.slf4j.Slf4j;
+import org.tetris.simple.Utils.Config;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.SplittableRandom;
+
+import static org.tetris.simple.Utils.Config.migrationTimeout;
+
+/**Exchanges migrants between the islands of an island-model run through a shared directory. The islands form
+ * a ring: each one writes its best genomes into its own folder and reads those of the island before it.
+ * Files are written under a temporary name and then renamed, so a reader never sees half a file.*/
+@Slf4j
+public class Migration {
+    private static final int magic = 0x4754494d; // "GTIM"
+    private static final int version = 1;
+    private static final long pollInterval = 50;
+
+    private final int island, islandCount;
+    private final Path directory;
+
+    public Migration(int island, int islandCount, Path directory) {
+        if (island < 0 || island >= islandCount) {
+            throw new IllegalArgumentException("Island " + island + " is not part of a ring of " + islandCount);
+        }
+        this.island = island;
+        this.islandCount = islandCount;
+        this.directory = directory;
+        try {
+            Files.createDirectories(folder(island));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public int island() {
+        return island;
+    }
+
+    // islands evolve from different seeds, a fixed run seed is offset by the island index
+    public long islandSeed() {
+        return Config.seed != 0 ? Config.seed + island : new SplittableRandom().nextLong();
+    }
+
+    // every island keeps its own checkpoints next to its migrants
+    public Path checkpointDirectory() {
+        return islandFile("checkpoints");
+    }
+
+    // file or directory of the given name that belongs to this island only
+    public Path islandFile(String name) {
+        return folder(island).resolve(name);
+    }
+
+    /**Publishes the given genomes as this island's migrants of a generation.*/
+    public void emigrate(int generation, double[][] genomes) {
+        Path target = file(island, generation);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(magic);
+            out.writeInt(version);
+            out.writeInt(island);
+            out.writeInt(generation);
+            out.writeInt(genomes.length);
+            out.writeInt(genomes.length > 0 ? genomes[0].length : 0);
+            for (double[] genome : genomes) {
+                for (double weight : genome) {
+                    out.writeDouble(weight);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        log.info("Island {} sent {} migrants of generation {}", island, genomes.length, generation);
+    }
+
+    /**Waits for the migrants the previous island of the ring published for a generation.
+     * @return the received genomes, empty if the neighbour didn't deliver within the migration timeout*/
+    public double[][] immigrate(int generation) {
+        int neighbour = (island + islandCount - 1) % islandCount;
+        Path source = file(neighbour, generation);
+        long deadline = System.currentTimeMillis() + migrationTimeout;
+        while (!Files.exists(source)) {
+            if (System.currentTimeMillis() > deadline) {
+                log.warn("Island {} got no migrants from island {} for generation {}", island, neighbour, generation);
+                return new double[0][];
+            }
+            try {
+                Thread.sleep(pollInterval);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(source)))) {
+            if (in.readInt() != magic || in.readInt() != version) {
+                throw new IOException("Not a migration file: " + source);
+            }
+            in.readInt(); // sender
+            in.readInt(); // generation
+            double[][] genomes = new double[in.readInt()][in.readInt()];
+            for (double[] genome : genomes) {
+                for (int i = 0; i < genome.length; i++) {
+                    genome[i] = in.readDouble();
+                }
+            }
+            log.info("Island {} received {} migrants of generation {} from island {}", island, genomes.length, generation, neighbour);
+            return genomes;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Path folder(int island) {
+        return directory.resolve("island-" + island);
+    }
+
+    private Path file(int island, int generation) {
+        return folder(island).resolve("generation-" + generation + ".bin");
+    }
+}
@@ -1,11 +1,29 @@
 package org.tetris.simple;
 
 import lombok.extern.slf4j.Slf4j;
+import org.tetris.simple.Island.Migration;
 import org.tetris.simple.Tetris.GeneticTetris;
 
+import java.nio.file.Path;
+
+import static org.tetris.simple.Utils.Config.*;
+
 @Slf4j
 public class Main {
     public static void main(String[] args) {
+        // island mode: --island <index> <islandCount> <directory> [generations] [populationSize]
+        if (args.length >= 4 && args[0].equals("--island")) {
+            System.setProperty("java.awt.headless", "true");
+            Migration migration = new Migration(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Path.of(args[3]));
+            int generations = args.length > 4 ? Integer.parseInt(args[4]) : generationCount;
+            int size = args.length > 5 ? Integer.parseInt(args[5]) : populationSize;
+            new GeneticTetris(migration, size, generations).runGeneticTetris();
+            return;
+        }
+
+        if (headless) {
+            System.setProperty("java.awt.headless", "true");
+        }
         GeneticTetris application = new GeneticTetris();
         application.runGeneticTetris();
     }
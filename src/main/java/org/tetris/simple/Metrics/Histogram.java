@@ -0,0 +1,56 @@
+package org.tetris.simple.Metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**Histogram of non-negative values in power-of-two buckets, bucket b counts the values in [2^b, 2^(b+1)), bucket 0
+ * also takes 0. Every bucket is a striped counter, so concurrent games can record into it without contending on a
+ * single cache line. Percentiles are only exact up to a factor of two, which is plenty to see where time goes.*/
+public class Histogram {
+    private final LongAdder[] buckets = new LongAdder[64];
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public Histogram() {
+        for (int b = 0; b < buckets.length; b++) {
+            buckets[b] = new LongAdder();
+        }
+    }
+
+    public void record(long value) {
+        value = Math.max(0, value);
+        buckets[63 - Long.numberOfLeadingZeros(value | 1)].increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**Takes the values recorded since the last snapshot and starts over. Values recorded while the snapshot is
+     * taken end up in either this snapshot or the next one.*/
+    public Snapshot snapshotAndReset() {
+        long[] counts = new long[buckets.length];
+        long count = 0;
+        for (int b = 0; b < buckets.length; b++) {
+            counts[b] = buckets[b].sumThenReset();
+            count += counts[b];
+        }
+        return new Snapshot(counts, count, sum.sumThenReset(), max.getThenReset());
+    }
+
+    public record Snapshot(long[] counts, long count, long sum, long max) {
+        public double mean() {
+            return count > 0 ? (double) sum / count : 0;
+        }
+
+        /**@return upper bound of the bucket that holds the given quantile (0..1), never above the maximum*/
+        public long percentile(double quantile) {
+            long rank = (long) Math.ceil(quantile * count), seen = 0;
+            for (int b = 0; b < counts.length; b++) {
+                seen += counts[b];
+                if (seen >= rank && seen > 0) {
+                    return b == 63 ? max : Math.min(max, (1L << (b + 1)) - 1);
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.tetris.simple.Metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**Process-wide counters of the hot paths. Games count into plain fields of their own and add them here once
+ * they are over, so the move search never touches a shared counter. All counters are striped, the
+ * {@link MetricsReporter} takes and resets them once per generation.*/
+public class Metrics {
+    public static final LongAdder gamesPlayed = new LongAdder();
+    public static final LongAdder piecesPlaced = new LongAdder();
+    // drops the move search has looked at, lookahead plies included
+    public static final LongAdder candidatesEvaluated = new LongAdder();
+    // boards the network scored (one forward pass each) and the batched calls they were scored in
+    public static final LongAdder forwardPasses = new LongAdder();
+    public static final LongAdder batches = new LongAdder();
+    // scratch boards overwritten with another board, see Well.copyFrom
+    public static final LongAdder boardCopies = new LongAdder();
+
+    // wall time of single games and of all games of an individual (ns)
+    public static final Histogram gameLatency = new Histogram();
+    public static final Histogram individualLatency = new Histogram();
+
+    // INFO: utilization of the worker pool is the time spent in games over the time the pool could have spent in
+    //  them, i.e. the wall time of the evaluation times its threads (ns)
+    public static final LongAdder busyNanos = new LongAdder();
+    public static final LongAdder capacityNanos = new LongAdder();
+    public static final LongAdder evaluationNanos = new LongAdder();
+    public static final LongAdder workerSteals = new LongAdder();
+
+    private Metrics() {
+    }
+
+    /**Adds the counts of a finished game.*/
+    public static void recordGame(long pieces, long candidates, long scored, long batchCalls, long copies, long nanos) {
+        gamesPlayed.increment();
+        piecesPlaced.add(pieces);
+        candidatesEvaluated.add(candidates);
+        forwardPasses.add(scored);
+        batches.add(batchCalls);
+        boardCopies.add(copies);
+        busyNanos.add(nanos);
+        gameLatency.record(nanos);
+    }
+
+    /**Adds a finished evaluation of a population.
+     * @param threads threads that could have played games during it*/
+    public static void recordEvaluation(long nanos, int threads, long steals) {
+        evaluationNanos.add(nanos);
+        capacityNanos.add(nanos * threads);
+        workerSteals.add(steals);
+    }
+}
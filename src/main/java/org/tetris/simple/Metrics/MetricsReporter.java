@@ -0,0 +1,182 @@
+package org.tetris.simple.Metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**Turns the counters of {@link Metrics} into one JSON object per generation. Every object is logged in short,
+ * appended as a line to the metrics file and served as the latest generation by a local HTTP endpoint
+ * (GET /metrics), the last two only if they are configured. Close the reporter to stop the server.*/
+@Slf4j
+public class MetricsReporter implements AutoCloseable {
+    private final BufferedWriter file;
+    private final HttpServer server;
+    private volatile String latest = "{}";
+
+    // baselines taken when the running generation started
+    private long start, allocated, collections, collectionMillis;
+
+    /**@param file JSON-lines file to append to, empty for none
+     * @param port loopback port of the HTTP endpoint, 0 for none*/
+    public MetricsReporter(String file, int port) {
+        try {
+            this.file = file.isEmpty() ? null : Files.newBufferedWriter(Path.of(file), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            this.server = port > 0 ? HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0) : null;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (server != null) {
+            server.createContext("/metrics", exchange -> {
+                byte[] body = latest.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            log.info("Serving metrics on http://localhost:{}/metrics", port);
+        }
+    }
+
+    public void startGeneration() {
+        start = System.nanoTime();
+        allocated = allocatedBytes();
+        collections = 0;
+        collectionMillis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections += Math.max(0, collector.getCollectionCount());
+            collectionMillis += Math.max(0, collector.getCollectionTime());
+        }
+    }
+
+    /**Takes the counters of the generation that just finished and publishes them.*/
+    public void endGeneration(int generation) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long allocatedNow = allocatedBytes();
+        long gcCount = -collections, gcMillis = -collectionMillis;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(0, collector.getCollectionCount());
+            gcMillis += Math.max(0, collector.getCollectionTime());
+        }
+
+        long games = Metrics.gamesPlayed.sumThenReset();
+        long pieces = Metrics.piecesPlaced.sumThenReset();
+        long candidates = Metrics.candidatesEvaluated.sumThenReset();
+        long forwardPasses = Metrics.forwardPasses.sumThenReset();
+        long batches = Metrics.batches.sumThenReset();
+        long copies = Metrics.boardCopies.sumThenReset();
+        long busy = Metrics.busyNanos.sumThenReset(), capacity = Metrics.capacityNanos.sumThenReset();
+        double evaluationSeconds = Metrics.evaluationNanos.sumThenReset() / 1e9;
+        long steals = Metrics.workerSteals.sumThenReset();
+        // INFO: allocation is summed over the live threads, threads that ended during the generation take their
+        //  share with them, so the value is a lower bound. -1 if the JVM can't measure it, which leaves it out
+        long allocatedBytes = allocated >= 0 && allocatedNow >= 0 ? Math.max(0, allocatedNow - allocated) : -1;
+
+        StringBuilder json = new StringBuilder(512).append('{');
+        field(json, "generation", generation);
+        field(json, "timestamp", System.currentTimeMillis());
+        field(json, "seconds", seconds);
+        field(json, "evaluationSeconds", evaluationSeconds);
+        field(json, "games", games);
+        field(json, "pieces", pieces);
+        field(json, "piecesPerSecond", evaluationSeconds > 0 ? pieces / evaluationSeconds : 0);
+        field(json, "candidates", candidates);
+        field(json, "candidatesPerPiece", perPiece(candidates, pieces));
+        field(json, "forwardPasses", forwardPasses);
+        field(json, "forwardPassesPerBatch", batches > 0 ? (double) forwardPasses / batches : 0);
+        field(json, "boardCopies", copies);
+        field(json, "boardCopiesPerPiece", perPiece(copies, pieces));
+        latency(json, "gameLatencyMs", Metrics.gameLatency.snapshotAndReset());
+        latency(json, "individualLatencyMs", Metrics.individualLatency.snapshotAndReset());
+        if (allocatedBytes >= 0) {
+            field(json, "allocatedBytes", allocatedBytes);
+            field(json, "allocatedBytesPerPiece", perPiece(allocatedBytes, pieces));
+        }
+        field(json, "gcCount", gcCount);
+        field(json, "gcMillis", gcMillis);
+        field(json, "workerUtilization", capacity > 0 ? (double) busy / capacity : 0);
+        field(json, "workerSteals", steals);
+        json.setLength(json.length() - 1);
+        String line = json.append('}').toString();
+
+        latest = line;
+        log.info("Throughput \t\tGen:{} \tpieces/s: {} \t forward passes: {} \t utilization: {}% \t allocated: {}",
+                generation, Math.round(evaluationSeconds > 0 ? pieces / evaluationSeconds : 0), forwardPasses,
+                Math.round(capacity > 0 ? 100.0 * busy / capacity : 0), allocatedBytes >= 0 ? (allocatedBytes >> 20) + " MB" : "n/a");
+        if (file != null) {
+            try {
+                file.write(line);
+                file.newLine();
+                file.flush();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static double perPiece(long value, long pieces) {
+        return pieces > 0 ? (double) value / pieces : 0;
+    }
+
+    private static void latency(StringBuilder json, String name, Histogram.Snapshot snapshot) {
+        json.append('"').append(name).append("\":{");
+        field(json, "count", snapshot.count());
+        field(json, "mean", snapshot.mean() / 1e6);
+        field(json, "p50", snapshot.percentile(0.5) / 1e6);
+        field(json, "p90", snapshot.percentile(0.9) / 1e6);
+        field(json, "p99", snapshot.percentile(0.99) / 1e6);
+        field(json, "max", snapshot.max() / 1e6);
+        json.setLength(json.length() - 1);
+        json.append("},");
+    }
+
+    private static void field(StringBuilder json, String name, long value) {
+        json.append('"').append(name).append("\":").append(value).append(',');
+    }
+
+    private static void field(StringBuilder json, String name, double value) {
+        json.append('"').append(name).append("\":").append(String.format(Locale.ROOT, "%.3f", value)).append(',');
+    }
+
+    // bytes allocated by all live threads so far, -1 if the JVM doesn't count them
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean counting) || !counting.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long bytes : counting.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(0, bytes);
+        }
+        return total;
+    }
+}
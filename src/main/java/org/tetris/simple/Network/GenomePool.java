@@ -0,0 +1,20 @@
+package org.tetris.simple.Network;
+
+/**Structure-of-arrays storage for the genomes of a population: two flat arenas of size * genomeLength
+ * doubles, one for the generation that is evaluated and one its children are bred into. Networks are bound
+ * to their record once (see {@link NeuralNetwork#bind}) and crossover and mutation then write straight into
+ * the child arena, so turning over a generation allocates nothing.*/
+public class GenomePool {
+    private final double[][] arenas;
+    private final int genomeLength;
+
+    public GenomePool(int size, int genomeLength) {
+        this.genomeLength = genomeLength;
+        this.arenas = new double[2][size * genomeLength];
+    }
+
+    // binds the network to a record of one of the two arenas
+    public void bind(NeuralNetwork network, int arena, int record) {
+        network.bind(arenas[arena], record * genomeLength);
+    }
+}
@@ -2,13 +2,26 @@ package org.tetris.simple.Network;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.random.RandomGenerator;
+
 import static org.tetris.simple.Utils.Config.mutationRate;
 
 @Slf4j
 public class NeuralNetwork {
     int inputNodes, hiddenNodes, outputNodes, hiddenLayers;
+    // INFO: all layers live in one contiguous genome, each layer is a row-major (nodes x inputs + bias) block.
+    //  networkMatrix holds the Weights views into it, layerOffsets where each block starts relative to base.
+    //  The genome is either owned by the network (base 0) or a range of a shared arena, see bind.
+    double[] genome;
+    int base;
+    final int genomeLength;
+    int[] layerOffsets;
     Weights[] networkMatrix;
 
+    // per-thread activation buffers of the forward pass, grown to the widest network a thread has seen
+    private static final ThreadLocal<double[][]> activations = ThreadLocal.withInitial(() -> new double[2][0]);
+    private static final ThreadLocal<double[][]> batchActivations = ThreadLocal.withInitial(() -> new double[2][0]);
+
     public NeuralNetwork(int inputNodes, int hiddenNodes, int outputNodes, int hiddenLayers) {
         this.inputNodes = inputNodes;
         this.hiddenNodes = hiddenNodes;
@@ -16,54 +29,179 @@ public class NeuralNetwork {
         this.hiddenLayers = hiddenLayers;
 
         networkMatrix = new Weights[hiddenLayers + 1]; // hidden layers + output layer
-        networkMatrix[0] = new Weights(hiddenNodes, inputNodes + 1);
+        layerOffsets = new int[hiddenLayers + 1];
+        int[] rows = new int[hiddenLayers + 1], cols = new int[hiddenLayers + 1];
+        rows[0] = hiddenNodes;
+        cols[0] = inputNodes + 1;
         for (int i = 1; i < hiddenLayers; i++) {
-            networkMatrix[i] = new Weights(hiddenNodes, hiddenNodes + 1);
+            rows[i] = hiddenNodes;
+            cols[i] = hiddenNodes + 1;
+        }
+        rows[hiddenLayers] = outputNodes;
+        cols[hiddenLayers] = hiddenNodes + 1;
+
+        int length = 0;
+        for (int i = 0; i < networkMatrix.length; i++) {
+            layerOffsets[i] = length;
+            length += rows[i] * cols[i];
+        }
+        genomeLength = length;
+        genome = new double[genomeLength];
+        for (int i = 0; i < networkMatrix.length; i++) {
+            networkMatrix[i] = new Weights(genome, layerOffsets[i], rows[i], cols[i]);
         }
-        networkMatrix[networkMatrix.length - 1] = new Weights(outputNodes, hiddenNodes + 1);
     }
 
-    public void rollInitialWeights() {
+    public void rollInitialWeights(RandomGenerator random) {
         for (Weights matrix : networkMatrix) {
-            matrix.randomizeWeights();
+            matrix.randomizeWeights(random);
+        }
+    }
+
+    /**Makes this network a view of genomeLength() doubles of the arena starting at offset. Nothing is copied,
+     * the network reads and mutates the arena directly from then on.*/
+    public void bind(double[] arena, int offset) {
+        genome = arena;
+        base = offset;
+        for (int i = 0; i < networkMatrix.length; i++) {
+            networkMatrix[i].data = arena;
+            networkMatrix[i].offset = offset + layerOffsets[i];
         }
     }
 
+    public int genomeLength() {
+        return genomeLength;
+    }
+
+    // copies the flat weights of all layers into the given array
+    public void copyGenome(double[] target) {
+        System.arraycopy(genome, base, target, 0, genomeLength);
+    }
+
+    // copies the flat weights of all layers into another network of the same shape
+    public void copyGenome(NeuralNetwork target) {
+        System.arraycopy(genome, base, target.genome, target.base, genomeLength);
+    }
+
+    // replaces the flat weights of all layers, e.g. with a stored genome
+    public void loadGenome(double[] source) {
+        System.arraycopy(source, 0, genome, base, genomeLength);
+    }
+
     public double[] calculateOutputLayer(double[] input) {
-        Weights inputs = new Weights(input);
-        Weights currentBias = inputs.addBiasNode();
+        double[] output = forward(input);
+        double[] result = new double[outputNodes];
+        System.arraycopy(output, 0, result, 0, outputNodes);
+        return result;
+    }
 
-        for (int i = 0; i < hiddenLayers; i++) {
-            Weights hiddenIn = networkMatrix[i].dot(currentBias);
-            Weights hiddenOp = hiddenIn.activate();
-            currentBias = hiddenOp.addBiasNode();
+    /**Scores a single input vector and returns the value of the first output node. Runs entirely on the flat
+     * genome and the calling thread's activation buffers, so nothing is allocated.*/
+    public double evaluate(double[] input) {
+        return forward(input)[0];
+    }
+
+    /**Scores a whole batch of input vectors in one layer-by-layer pass and writes the first output node of each
+     * into scores. Inputs are stored feature-major, input k of vector b lives at inputs[k * stride + b].
+     * Every inner loop runs over the batch with unit stride, which lets the JIT vectorize it, and each score is
+     * bit-identical to {@link #evaluate(double[])}.*/
+    public void evaluateBatch(double[] inputs, int stride, int count, double[] scores) {
+        double[][] buffers = batchActivations.get();
+        int width = Math.max(hiddenNodes, outputNodes) * count;
+        if (buffers[0].length < width) {
+            buffers[0] = new double[width];
+            buffers[1] = new double[width];
         }
 
-        Weights output = networkMatrix[networkMatrix.length - 1].dot(currentBias);
-        return output.toArray();
+        double[] in = inputs, out = buffers[0];
+        int inStride = stride;
+        for (int layer = 0; layer < networkMatrix.length; layer++) {
+            int nodes = networkMatrix[layer].rows, layerStride = networkMatrix[layer].cols;
+            int layerInputs = layerStride - 1;
+            boolean hidden = layer < hiddenLayers;
+            for (int node = 0, row = base + layerOffsets[layer]; node < nodes; node++, row += layerStride) {
+                int target = node * count;
+                for (int b = 0; b < count; b++) {
+                    out[target + b] = 0;
+                }
+                for (int k = 0; k < layerInputs; k++) {
+                    double weight = genome[row + k];
+                    int source = k * inStride;
+                    for (int b = 0; b < count; b++) {
+                        out[target + b] += weight * in[source + b];
+                    }
+                }
+                // the bias node is the last input and always 1
+                double bias = genome[row + layerInputs];
+                if (hidden) {
+                    for (int b = 0; b < count; b++) {
+                        out[target + b] = Math.max(0, out[target + b] + bias);
+                    }
+                } else {
+                    for (int b = 0; b < count; b++) {
+                        out[target + b] += bias;
+                    }
+                }
+            }
+            in = out;
+            inStride = count;
+            out = out == buffers[0] ? buffers[1] : buffers[0];
+        }
+        System.arraycopy(in, 0, scores, 0, count);
     }
 
-    public void mutate() {
+    // returns the thread's activation buffer that holds the output layer
+    private double[] forward(double[] input) {
+        double[][] buffers = activations.get();
+        int width = Math.max(hiddenNodes, outputNodes);
+        if (buffers[0].length < width) {
+            buffers[0] = new double[width];
+            buffers[1] = new double[width];
+        }
+
+        double[] in = input, out = buffers[0];
+        for (int layer = 0; layer < networkMatrix.length; layer++) {
+            int nodes = networkMatrix[layer].rows, stride = networkMatrix[layer].cols;
+            int inputs = stride - 1;
+            boolean hidden = layer < hiddenLayers;
+            for (int node = 0, row = base + layerOffsets[layer]; node < nodes; node++, row += stride) {
+                double sum = 0;
+                for (int k = 0; k < inputs; k++) {
+                    sum += genome[row + k] * in[k];
+                }
+                // the bias node is the last input and always 1
+                sum += genome[row + inputs];
+                out[node] = hidden ? Math.max(0, sum) : sum;
+            }
+            in = out;
+            out = out == buffers[0] ? buffers[1] : buffers[0];
+        }
+        return in;
+    }
+
+    public void mutate(RandomGenerator random) {
         for (Weights matrix : networkMatrix) {
-            matrix.mutateWeights(mutationRate);
+            matrix.mutateWeights(mutationRate, random);
         }
     }
 
-    public NeuralNetwork crossover(NeuralNetwork parent) {
+    public NeuralNetwork crossover(NeuralNetwork parent, RandomGenerator random) {
         NeuralNetwork child = new NeuralNetwork(inputNodes, hiddenNodes, outputNodes, hiddenLayers);
+        crossover(parent, child, random);
+        return child;
+    }
+
+    // writes the crossover of this network and the parent into an existing child, layer by layer
+    public void crossover(NeuralNetwork parent, NeuralNetwork child, RandomGenerator random) {
         for (int i = 0; i < networkMatrix.length; i++) {
-            child.networkMatrix[i] = networkMatrix[i].onePointCrossover(parent.networkMatrix[i]);
+            networkMatrix[i].onePointCrossover(parent.networkMatrix[i], child.networkMatrix[i], random);
         }
-        return child;
     }
 
     @Override
     public NeuralNetwork clone() {
         NeuralNetwork clone = new NeuralNetwork(inputNodes, hiddenNodes, outputNodes, hiddenLayers);
-        for (int i = 0; i < networkMatrix.length; i++) {
-            clone.networkMatrix[i] = networkMatrix[i].clone();
-        }
-
+        copyGenome(clone);
         return clone;
     }
 
@@ -2,152 +2,71 @@ package org.tetris.simple.Network;
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 @Slf4j
 public class Weights {
     int rows, cols;
     // INFO: range 0.0 - 1.0
-    double[][] weightMatrix;
+    //  row-major view into a flat array, entry (i, j) lives at data[offset + i * cols + j].
+    //  Several matrices can share one array, which is how a network keeps all of its layers contiguous.
+    double[] data;
+    int offset;
 
-    public Weights(int rows, int cols) {
+    public Weights(double[] data, int offset, int rows, int cols) {
         this.rows = rows;
         this.cols = cols;
-        this.weightMatrix = new double[rows][cols];
+        this.data = data;
+        this.offset = offset;
     }
 
-    public Weights(double[][] matrix) {
-        this.rows = matrix.length;
-        this.cols = matrix[0].length;
-        this.weightMatrix = matrix;
+    public double get(int row, int col) {
+        return data[offset + row * cols + col];
     }
 
-    // Used only for the input matrix, hence the column hard-limit at 1
-    public Weights(double[] input) {
-        this.rows = input.length;
-        this.cols = 1;
-        this.weightMatrix = new double[rows][cols];
-        for (int i = 0; i < input.length; i++) {
-            this.weightMatrix[i][0] = input[i];
-        }
+    public void set(int row, int col, double value) {
+        data[offset + row * cols + col] = value;
     }
 
-    public Weights onePointCrossover(Weights parent) {
-        Weights child = new Weights(rows, cols);
-
-        int lowerRowBound = ThreadLocalRandom.current().nextInt(rows);
-        int lowerColBound = ThreadLocalRandom.current().nextInt(cols);
+    /**Writes a one-point crossover of this matrix and the given parent into the child matrix. Everything up to
+     * a random (row, column) point is taken from this matrix, the rest from the parent.*/
+    public void onePointCrossover(Weights parent, Weights child, RandomGenerator random) {
+        int lowerRowBound = random.nextInt(rows);
+        int lowerColBound = random.nextInt(cols);
 
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                if ((i < lowerRowBound) || (i == lowerRowBound) && (j <= lowerColBound)) {
-                    child.weightMatrix[i][j] = weightMatrix[i][j];
-                } else {
-                    child.weightMatrix[i][j] = parent.weightMatrix[i][j];
-                }
-            }
-        }
-
-        return child;
-    }
-
-    public Weights dot(Weights weights) {
-        Weights result = new Weights(rows, weights.cols);
-
-        if (cols == weights.rows) {
-            for (int i = 0; i < rows; i++) {
-                for (int j = 0; j < weights.cols; j++) {
-                    double sum = 0;
-                    for (int k = 0; k < cols; k++) {
-                        sum += weightMatrix[i][k] * weights.weightMatrix[k][j];
-                    }
-                    result.weightMatrix[i][j] = sum;
-                }
-            }
-        }
-        return result;
-    }
-
-    // activates the current matrix
-    public Weights activate() {
-        Weights activated = new Weights(rows, cols);
-
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                activated.weightMatrix[i][j] = relu(weightMatrix[i][j]);
-            }
-        }
-
-        return activated;
+        // INFO: in row-major order the crossover point is a single cut through the flat matrix
+        int cut = lowerRowBound * cols + lowerColBound + 1;
+        System.arraycopy(data, offset, child.data, child.offset, cut);
+        System.arraycopy(parent.data, parent.offset + cut, child.data, child.offset + cut, rows * cols - cut);
     }
 
     // randomize ALL weights
-    public void randomizeWeights() {
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                weightMatrix[i][j] = ThreadLocalRandom.current().nextDouble(-1d, 1d);
-            }
-        }
-    }
-
-    // adds a bias weighting to a weight matrix
-    public Weights addBiasNode() {
-        Weights biasMatrix = new Weights(rows+1, 1);
-        for (int i = 0; i < rows; i++) {
-            biasMatrix.weightMatrix[i][0] = weightMatrix[i][0];
+    public void randomizeWeights(RandomGenerator random) {
+        for (int i = 0; i < rows * cols; i++) {
+            data[offset + i] = random.nextDouble(-1d, 1d);
         }
-        biasMatrix.weightMatrix[rows][0] = 1;
-        return biasMatrix;
-    }
-
-    /** See source: <a href="https://en.wikipedia.org/wiki/Rectifier_(neural_networks)">RELU</a>*/
-    public double relu(double x) {
-        return Math.max(0, x);
     }
 
     /**Mutates the entire weight matrix with a given mutation rate.
      * @param mutationRate a given rate where 5% = 0.05*/
-    public void mutateWeights(double mutationRate) {
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                // from 0.0f to 1.0f
-                double chance = ThreadLocalRandom.current().nextDouble();
-                if (chance < mutationRate) {
-                    // log.info("Muted weight {} - {}", i, j);
-                    weightMatrix[i][j] += ThreadLocalRandom.current().nextGaussian() / 4;
-                    // make sure not to exceed weight ranges
-                    weightMatrix[i][j] = Math.clamp(weightMatrix[i][j], 0, 1);
-                }
+    public void mutateWeights(double mutationRate, RandomGenerator random) {
+        for (int i = offset; i < offset + rows * cols; i++) {
+            // from 0.0f to 1.0f
+            double chance = random.nextDouble();
+            if (chance < mutationRate) {
+                data[i] += random.nextGaussian() / 4;
+                // make sure not to exceed weight ranges
+                data[i] = Math.clamp(data[i], 0, 1);
             }
         }
     }
 
-    public double[] toArray() {
-        double[] result = new double[rows*cols];
-        for (int i = 0; i < rows; i++) {
-            // WARNING: this was autocorrected by the IDE, I don't trust it
-            if (cols >= 0) System.arraycopy(weightMatrix[i], 0, result, i * cols, cols);
-        }
-        return result;
-    }
-
-    // INFO: crossover implementations here
-
-    @Override
-    public Weights clone() {
-        Weights clone = new Weights(rows, cols);
-        for (int i = 0; i < rows; i++) {
-            if (cols >= 0) System.arraycopy(weightMatrix[i], 0, clone.weightMatrix[i], 0, cols);
-        }
-        return clone;
-    }
-
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < rows; i++) {
             for (int j = 0; j < cols; j++) {
-                sb.append(String.valueOf(weightMatrix[i][j]), 0, 5).append(" ");
+                sb.append(String.valueOf(get(i, j)), 0, 5).append(" ");
             }
             sb.append("\n");
         }
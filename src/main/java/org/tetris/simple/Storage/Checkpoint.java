@@ -0,0 +1,172 @@
+package org.tetris.simple.Storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**Snapshot of a population between two generations, enough to continue the run exactly where it stopped.
+ * Every random decision of a run is derived from its seed and the generation (see Seeds), so the seed is the
+ * whole RNG state.
+ * <p>
+ * File layout (big endian): magic, version, generation, seed, size, genome length, the stats of the generation
+ * that bred this population and its leaderboard cutoff (since version 2), then id + genome of every individual
+ * and a CRC32 of everything before it.
+ * Files are written under a temporary name and renamed, so a crash never leaves a half written checkpoint.*/
+@Slf4j
+public class Checkpoint {
+    private static final int magic = 0x47544350; // "GTCP"
+    private static final int version = 2;
+    private static final int headerBytes = 4 + 4 + 4 + 8 + 4 + 4 + 8 + 8 + 4 + 4 + 8;
+    private static final Pattern fileName = Pattern.compile("checkpoint-(\\d+)\\.bin");
+
+    // population about to be evaluated
+    public final int generation;
+    public final long seed;
+    public final int[] ids;
+    public final double[][] genomes;
+
+    // stats of the previous generation
+    public final double bestFitness, averageFitness;
+    public final int naturalDeaths, timedDeaths;
+    // fitness the games of the next generation have to be able to reach, see EarlyStopping
+    public final double cutoff;
+
+    public Checkpoint(int generation, long seed, int[] ids, double[][] genomes, double bestFitness,
+                      double averageFitness, int naturalDeaths, int timedDeaths, double cutoff) {
+        this.generation = generation;
+        this.seed = seed;
+        this.ids = ids;
+        this.genomes = genomes;
+        this.bestFitness = bestFitness;
+        this.averageFitness = averageFitness;
+        this.naturalDeaths = naturalDeaths;
+        this.timedDeaths = timedDeaths;
+        this.cutoff = cutoff;
+    }
+
+    /**@return whether a checkpoint is written after the given generation, never for an interval of 0 or less*/
+    public static boolean due(int generation, int interval) {
+        return interval > 0 && generation % interval == 0;
+    }
+
+    /**Writes this checkpoint to the directory and removes all but the newest keep checkpoints in it.*/
+    public void write(Path directory, int keep) {
+        int genomeLength = genomes.length > 0 ? genomes[0].length : 0;
+        ByteBuffer buffer = ByteBuffer.allocate(headerBytes + genomes.length * (4 + genomeLength * 8) + 8);
+        buffer.putInt(magic).putInt(version).putInt(generation).putLong(seed)
+                .putInt(genomes.length).putInt(genomeLength)
+                .putDouble(bestFitness).putDouble(averageFitness).putInt(naturalDeaths).putInt(timedDeaths)
+                .putDouble(cutoff);
+        for (int i = 0; i < genomes.length; i++) {
+            buffer.putInt(ids[i]);
+            buffer.asDoubleBuffer().put(genomes[i]);
+            buffer.position(buffer.position() + genomeLength * 8);
+        }
+        buffer.putLong(checksum(buffer.array(), buffer.position()));
+        buffer.flip();
+
+        Path target = directory.resolve("checkpoint-" + generation + ".bin");
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            try (FileChannel channel = FileChannel.open(temporary, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            List<Path> checkpoints = list(directory);
+            for (int i = 0; i < checkpoints.size() - keep; i++) {
+                Files.delete(checkpoints.get(i));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        log.info("Checkpoint of generation {} written to {}", generation, target);
+    }
+
+    public static Checkpoint read(Path file) {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) ;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        buffer.flip();
+
+        if (buffer.remaining() < headerBytes || buffer.getInt() != magic) {
+            throw new IllegalStateException(file + " is not a checkpoint");
+        }
+        int fileVersion = buffer.getInt();
+        if (fileVersion < 1 || fileVersion > version) {
+            throw new IllegalStateException(file + " has unsupported checkpoint version " + fileVersion);
+        }
+        if (buffer.getLong(buffer.limit() - 8) != checksum(buffer.array(), buffer.limit() - 8)) {
+            throw new IllegalStateException(file + " is corrupted, checksum mismatch");
+        }
+        int generation = buffer.getInt();
+        long seed = buffer.getLong();
+        int size = buffer.getInt(), genomeLength = buffer.getInt();
+        double bestFitness = buffer.getDouble(), averageFitness = buffer.getDouble();
+        int naturalDeaths = buffer.getInt(), timedDeaths = buffer.getInt();
+        // version 1 didn't keep the cutoff
+        double cutoff = fileVersion >= 2 ? buffer.getDouble() : Double.NEGATIVE_INFINITY;
+        int[] ids = new int[size];
+        double[][] genomes = new double[size][genomeLength];
+        for (int i = 0; i < size; i++) {
+            ids[i] = buffer.getInt();
+            buffer.asDoubleBuffer().get(genomes[i]);
+            buffer.position(buffer.position() + genomeLength * 8);
+        }
+        return new Checkpoint(generation, seed, ids, genomes, bestFitness, averageFitness, naturalDeaths, timedDeaths, cutoff);
+    }
+
+    /**@return the checkpoint of the highest generation in the directory, null if there is none*/
+    public static Checkpoint latest(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return null;
+        }
+        try {
+            List<Path> checkpoints = list(directory);
+            return checkpoints.isEmpty() ? null : read(checkpoints.getLast());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // checkpoint files of the directory, oldest generation first
+    private static List<Path> list(Path directory) throws IOException {
+        List<Path> checkpoints = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> fileName.matcher(file.getFileName().toString()).matches()).forEach(checkpoints::add);
+        }
+        checkpoints.sort((a, b) -> Integer.compare(generationOf(a), generationOf(b)));
+        return checkpoints;
+    }
+
+    private static int generationOf(Path file) {
+        Matcher matcher = fileName.matcher(file.getFileName().toString());
+        matcher.matches();
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    private static long checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,300 @@
+package org.tetris.simple.Storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**Append-only log of the {@link GenerationRecords} of a run. {@link #append} only hands the records to a background
+ * thread, which encodes every generation into one block and writes it with a single call, so the evaluation never
+ * waits for the disk. {@link #stream} reads the blocks of a range of generations one at a time.
+ * <p>
+ * File layout (big endian): magic and version, then one block per generation: generation, size, the columns of
+ * the records (ids, first parents, second parents, fitness, lines cleared, lifetime, games, deaths) and a CRC32 of
+ * the block. A block cut off by a crash is dropped when the log is opened again, and so is everything from the
+ * first block on whose size or checksum is wrong. A resumed run logs the generations it repeats a second time,
+ * readers get both blocks in the order they were written.*/
+@Slf4j
+public class GenerationLog implements AutoCloseable {
+    private static final int magic = 0x4754474c; // "GTGL"
+    private static final int version = 1;
+    private static final int headerBytes = 4 + 4;
+    private static final int blockHeaderBytes = 4 + 4;
+    private static final int recordBytes = 4 + 4 + 4 + 8 + 8 + 8 + 4 + 1;
+
+    private final Path file;
+    private final FileChannel channel;
+    // INFO: a single thread writes the blocks, in the order they were appended
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "generation-log");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // first write that failed, reported by the next append or close
+    private volatile IOException failure;
+
+    public GenerationLog(Path file) {
+        this.file = file;
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            channel = FileChannel.open(file, CREATE, READ, WRITE);
+            if (channel.size() == 0) {
+                channel.write(ByteBuffer.allocate(headerBytes).putInt(magic).putInt(version).flip());
+            } else {
+                checkHeader(channel, file);
+                long end = completeBlocks(channel);
+                if (end < channel.size()) {
+                    log.warn("Dropping {} bytes of an incomplete block at the end of {}", channel.size() - end, file);
+                    channel.truncate(end);
+                }
+            }
+            channel.position(channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        log.info("Logging the records of every generation to {}", file);
+    }
+
+    /**Queues the records of a generation to be written. They must not be changed afterwards.*/
+    public void append(GenerationRecords records) {
+        checkFailure();
+        writer.execute(() -> {
+            if (failure != null) {
+                return;
+            }
+            ByteBuffer block = encode(records);
+            try {
+                while (block.hasRemaining()) {
+                    channel.write(block);
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        });
+    }
+
+    /**Waits until every queued generation is written and closes the file.*/
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            channel.force(false);
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new RuntimeException("Writing " + file + " failed", failure);
+        }
+    }
+
+    private static ByteBuffer encode(GenerationRecords records) {
+        int size = records.size();
+        ByteBuffer block = ByteBuffer.allocate(blockHeaderBytes + size * recordBytes + 8);
+        block.putInt(records.generation()).putInt(size);
+        block.asIntBuffer().put(records.ids());
+        block.position(block.position() + size * 4);
+        block.asIntBuffer().put(records.firstParents());
+        block.position(block.position() + size * 4);
+        block.asIntBuffer().put(records.secondParents());
+        block.position(block.position() + size * 4);
+        block.asDoubleBuffer().put(records.fitness());
+        block.position(block.position() + size * 8);
+        block.asLongBuffer().put(records.linesCleared());
+        block.position(block.position() + size * 8);
+        block.asLongBuffer().put(records.lifeTime());
+        block.position(block.position() + size * 8);
+        block.asIntBuffer().put(records.games());
+        block.position(block.position() + size * 4);
+        block.put(records.deaths());
+        block.putLong(checksum(block.array(), block.position()));
+        return block.flip();
+    }
+
+    private static GenerationRecords decode(ByteBuffer block) {
+        GenerationRecords records = new GenerationRecords(block.getInt(), block.getInt());
+        int size = records.size();
+        block.asIntBuffer().get(records.ids());
+        block.position(block.position() + size * 4);
+        block.asIntBuffer().get(records.firstParents());
+        block.position(block.position() + size * 4);
+        block.asIntBuffer().get(records.secondParents());
+        block.position(block.position() + size * 4);
+        block.asDoubleBuffer().get(records.fitness());
+        block.position(block.position() + size * 8);
+        block.asLongBuffer().get(records.linesCleared());
+        block.position(block.position() + size * 8);
+        block.asLongBuffer().get(records.lifeTime());
+        block.position(block.position() + size * 8);
+        block.asIntBuffer().get(records.games());
+        block.position(block.position() + size * 4);
+        block.get(records.deaths());
+        return records;
+    }
+
+    /**Streams the records of the generations from..to (inclusive) in the order they were written. Only one block
+     * is held in memory at a time and the blocks of other generations are skipped without being read. Close the
+     * stream to close the file.*/
+    public static Stream<GenerationRecords> stream(Path file, int from, int to) {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, READ);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        try {
+            checkHeader(channel, file);
+        } catch (IOException | RuntimeException e) {
+            try {
+                channel.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e instanceof IOException io ? new RuntimeException(io) : (RuntimeException) e;
+        }
+        Iterator<GenerationRecords> blocks = new Iterator<>() {
+            private long position = headerBytes;
+            private GenerationRecords next = advance();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public GenerationRecords next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                GenerationRecords current = next;
+                next = advance();
+                return current;
+            }
+
+            // reads the next block of a generation in the range, null at the end of the log
+            private GenerationRecords advance() {
+                try {
+                    while (true) {
+                        ByteBuffer header = ByteBuffer.allocate(blockHeaderBytes);
+                        if (!readFully(channel, header, position)) {
+                            return null;
+                        }
+                        int generation = header.getInt(0), size = header.getInt(4);
+                        if (size < 0) {
+                            throw new IllegalStateException(file + " is corrupted, negative block size at byte " + position);
+                        }
+                        long blockLength = blockLength(size, channel.size() - position);
+                        if (blockLength < 0) {
+                            // a block that is still being written, or was cut off
+                            return null;
+                        }
+                        int length = (int) blockLength;
+                        if (generation < from || generation > to) {
+                            position += length;
+                            continue;
+                        }
+                        ByteBuffer block = ByteBuffer.allocate(length);
+                        if (!readFully(channel, block, position)) {
+                            return null;
+                        }
+                        if (block.getLong(length - 8) != checksum(block.array(), length - 8)) {
+                            throw new IllegalStateException(file + " is corrupted, checksum mismatch at byte " + position);
+                        }
+                        position += length;
+                        return decode(block.flip());
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(blocks, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    private static void checkHeader(FileChannel channel, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(headerBytes);
+        if (!readFully(channel, header, 0) || header.getInt(0) != magic) {
+            throw new IllegalStateException(file + " is not a generation log");
+        }
+        if (header.getInt(4) != version) {
+            throw new IllegalStateException(file + " has unsupported generation log version " + header.getInt(4));
+        }
+    }
+
+    // end of the last block that was written completely and passes its checksum, the scan stops at the first
+    //  block whose size doesn't fit into the file or whose checksum doesn't match
+    private static long completeBlocks(FileChannel channel) throws IOException {
+        long position = headerBytes;
+        ByteBuffer header = ByteBuffer.allocate(blockHeaderBytes);
+        while (readFully(channel, header.clear(), position)) {
+            long length = blockLength(header.getInt(4), channel.size() - position);
+            if (length < 0) {
+                break;
+            }
+            ByteBuffer block = ByteBuffer.allocate((int) length);
+            if (!readFully(channel, block, position) || block.getLong((int) length - 8) != checksum(block.array(), (int) length - 8)) {
+                break;
+            }
+            position += length;
+        }
+        return position;
+    }
+
+    // length of a block of the given size, -1 if the size is negative or the block is longer than the bytes left
+    private static long blockLength(int size, long remaining) {
+        if (size < 0) {
+            return -1;
+        }
+        long length = blockHeaderBytes + (long) size * recordBytes + 8;
+        return length <= remaining && length <= Integer.MAX_VALUE ? length : -1;
+    }
+
+    // fills the buffer from the given position on, false if the file ends before
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    private static long checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,17 @@
+package org.tetris.simple.Storage;
+
+/**Results of every individual of one evaluated generation, stored column by column: entry i of each array belongs
+ * to the same individual. Parents are -1 where they aren't known, e.g. in the first generation of a run.
+ * Lines cleared and lifetime are summed over the individual's games, fitness is their mean and death holds the
+ * ordinal of the Death that ended most of them.*/
+public record GenerationRecords(int generation, int[] ids, int[] firstParents, int[] secondParents, double[] fitness,
+                                long[] linesCleared, long[] lifeTime, int[] games, byte[] deaths) {
+    public GenerationRecords(int generation, int size) {
+        this(generation, new int[size], new int[size], new int[size], new double[size], new long[size], new long[size],
+                new int[size], new byte[size]);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+}
@@ -0,0 +1,116 @@
+package org.tetris.simple.Storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**Keeps the genomes of a whole population in one memory-mapped file instead of on the heap.
+ * <p>
+ * The file holds two slots of fixed-stride records (id + genome), one for the generation that is evaluated
+ * and one the next generation is bred into, so parents are never overwritten by their children. The header
+ * names the active slot together with the generation and seed of the run, which lets a restarted run reopen
+ * the population without reading it. All reads and writes use absolute offsets, so worker threads can read
+ * genomes concurrently.*/
+@Slf4j
+public class GenomeStore {
+    private static final int magic = 0x4754474d; // "GTGM"
+    private static final int version = 1;
+    private static final int headerBytes = 64;
+    // header offsets
+    private static final int GENOME_LENGTH = 8, CAPACITY = 12, SEED = 16, GENERATION = 24, ACTIVE_SLOT = 28, CUTOFF = 32;
+
+    private final MappedByteBuffer buffer;
+    private final int genomeLength, capacity, stride;
+
+    private GenomeStore(MappedByteBuffer buffer, int genomeLength, int capacity) {
+        this.buffer = buffer;
+        this.genomeLength = genomeLength;
+        this.capacity = capacity;
+        this.stride = 8 + genomeLength * 8;
+    }
+
+    /**Opens the store in the given file or creates it. An existing file has to match capacity and genome length.*/
+    public static GenomeStore open(Path file, int capacity, int genomeLength) {
+        long size = headerBytes + 2L * capacity * (8 + genomeLength * 8L);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A genome store of " + capacity + " individuals exceeds 2 GB");
+        }
+        boolean exists = Files.exists(file);
+        try (FileChannel channel = FileChannel.open(file, CREATE, READ, WRITE)) {
+            // INFO: the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (!exists) {
+                buffer.putInt(0, magic).putInt(4, version).putInt(GENOME_LENGTH, genomeLength).putInt(CAPACITY, capacity);
+            } else if (buffer.getInt(0) != magic || buffer.getInt(4) != version) {
+                throw new IllegalStateException(file + " is not a genome store");
+            } else if (buffer.getInt(GENOME_LENGTH) != genomeLength || buffer.getInt(CAPACITY) != capacity) {
+                throw new IllegalStateException(file + " holds " + buffer.getInt(CAPACITY) + " genomes of length "
+                        + buffer.getInt(GENOME_LENGTH) + ", expected " + capacity + " of length " + genomeLength);
+            }
+            log.info("{} genome store {} ({} bytes)", exists ? "Reopened" : "Created", file, size);
+            return new GenomeStore(buffer, genomeLength, capacity);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**@return the generation held by the active slot, 0 if nothing was committed yet*/
+    public int generation() {
+        return buffer.getInt(GENERATION);
+    }
+
+    public int activeSlot() {
+        return buffer.getInt(ACTIVE_SLOT);
+    }
+
+    public long seed() {
+        return buffer.getLong(SEED);
+    }
+
+    // leaderboard cutoff of the generation that bred the active slot
+    public double cutoff() {
+        return buffer.getDouble(CUTOFF);
+    }
+
+    public int id(int slot, int record) {
+        return buffer.getInt(offset(slot, record));
+    }
+
+    public void read(int slot, int record, double[] genome) {
+        int offset = offset(slot, record) + 8;
+        for (int i = 0; i < genomeLength; i++) {
+            genome[i] = buffer.getDouble(offset + i * 8);
+        }
+    }
+
+    public void write(int slot, int record, int id, double[] genome) {
+        int offset = offset(slot, record);
+        buffer.putInt(offset, id);
+        offset += 8;
+        for (int i = 0; i < genomeLength; i++) {
+            buffer.putDouble(offset + i * 8, genome[i]);
+        }
+    }
+
+    /**Makes the given slot the active one and flushes the file, a restarted run continues from here.*/
+    public void commit(int slot, int generation, long seed, double cutoff) {
+        buffer.putLong(SEED, seed).putInt(GENERATION, generation).putInt(ACTIVE_SLOT, slot).putDouble(CUTOFF, cutoff);
+        buffer.force();
+    }
+
+    private int offset(int slot, int record) {
+        return headerBytes + (slot * capacity + record) * stride;
+    }
+}
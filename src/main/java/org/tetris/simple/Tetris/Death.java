@@ -0,0 +1,10 @@
+package org.tetris.simple.Tetris;
+
+/**Why a game ended.*/
+public enum Death {
+    NATURAL,      // the well overflowed
+    TIMED,        // lifeTime reached Config.timeOut
+    PIECE_BUDGET, // placed every piece the generation's budget allows
+    HOPELESS,     // could no longer reach the top-K fitness of the previous generation
+    WALL_CLOCK,   // the generation ran out of time
+}
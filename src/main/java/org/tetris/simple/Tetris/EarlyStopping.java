@@ -0,0 +1,45 @@
+package org.tetris.simple.Tetris;
+
+/**Limits under which a game is stopped before it is over, checked once per piece. The piece budget and the
+ * fitness cutoff only depend on the generation, so they keep seeded runs reproducible. The wall-clock deadline
+ * does not.*/
+public class EarlyStopping {
+    public static final EarlyStopping NONE = new EarlyStopping(Integer.MAX_VALUE, Double.NEGATIVE_INFINITY, Long.MAX_VALUE);
+
+    private final int pieceBudget;
+    private final double cutoff;
+    private final long deadline;
+
+    /**@param pieceBudget pieces a game may place
+     * @param cutoff fitness a game has to be able to reach to go on
+     * @param deadline System.nanoTime() after which every game stops*/
+    public EarlyStopping(int pieceBudget, double cutoff, long deadline) {
+        this.pieceBudget = pieceBudget;
+        this.cutoff = cutoff;
+        this.deadline = deadline;
+    }
+
+    /**@return the reason to stop the game before its next piece, null to go on*/
+    Death check(Well well, int pieces, int timeOut) {
+        if (pieces >= pieceBudget) {
+            return Death.PIECE_BUDGET;
+        }
+        if (cutoff > Double.NEGATIVE_INFINITY && bestReachableFitness(well, pieceBudget - pieces, timeOut) < cutoff) {
+            return Death.HOPELESS;
+        }
+        if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) {
+            return Death.WALL_CLOCK;
+        }
+        return null;
+    }
+
+    /**Upper bound of the fitness the game can still reach. Each piece adds 4 cells, every cleared line takes 10
+     * and scores at most 200 (four at once), and a piece is fixed after at most wellHeight ticks, since every
+     * tick either drops it a row or fixes it.*/
+    static double bestReachableFitness(Well well, int remainingPieces, int timeOut) {
+        long remainingTicks = Math.min(timeOut - well.lifeTime, (long) remainingPieces * well.wellHeight);
+        long pieces = Math.min(remainingPieces, remainingTicks);
+        long lines = (well.filledCells + 4 * pieces) / well.wellWidth;
+        return well.score + 200 * lines + (well.lifeTime + remainingTicks) * 0.1f;
+    }
+}
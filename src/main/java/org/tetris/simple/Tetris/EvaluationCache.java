@@ -0,0 +1,52 @@
+package org.tetris.simple.Tetris;
+
+/**Bounded cache of network scores, keyed by the Zobrist hash of the board after a drop. The network of an
+ * individual never changes during a game, so identical boards always get the same score. The cache is
+ * direct-mapped: every key has exactly one slot and a new entry simply replaces whatever was stored there.
+ * That keeps lookup and eviction O(1) and the memory fixed, no matter how long a game runs.*/
+public class EvaluationCache {
+    private final long[] keys;
+    private final double[] scores;
+    private final int mask;
+
+    protected long hits, misses;
+
+    /**@param size number of slots, rounded up to a power of two*/
+    public EvaluationCache(int size) {
+        int slots = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        this.keys = new long[slots];
+        this.scores = new double[slots];
+        this.mask = slots - 1;
+    }
+
+    /**@return the cached score, or NaN if the board hasn't been scored (or was evicted)*/
+    public double get(long key) {
+        int slot = slot(key);
+        // INFO: a key of 0 marks an empty slot, a real board hashing to 0 just never hits
+        if (key != 0 && keys[slot] == key) {
+            hits++;
+            return scores[slot];
+        }
+        misses++;
+        return Double.NaN;
+    }
+
+    public void put(long key, double score) {
+        int slot = slot(key);
+        keys[slot] = key;
+        scores[slot] = score;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    private int slot(long key) {
+        // the low bits of a Zobrist key are as random as the high ones, fold them anyway for short tables
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,118 @@
+package org.tetris.simple.Tetris;
+
+import lombok.extern.slf4j.Slf4j;
+import org.tetris.simple.Metrics.Metrics;
+import org.tetris.simple.Utils.TopK;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static org.tetris.simple.Utils.Config.gamesPerRound;
+import static org.tetris.simple.Utils.Config.minGamesBeforeRejection;
+import static org.tetris.simple.Utils.Config.rejectWorseIndividuals;
+
+/**Plays the games of a population. Games are independent of each other, so they are spread over a pool of worker
+ * threads, several games of the same individual included. In watched runs every game is offered to the view, which
+ * shows one of them at a time while the others keep running unobserved.*/
+@Slf4j
+public class Evaluator {
+    private final ForkJoinPool workers;
+    private final int parallelism;
+
+    /**@param workerThreads size of the worker pool, 0 uses every available core*/
+    public Evaluator(int workerThreads) {
+        this.parallelism = workerThreads > 0 ? workerThreads : Runtime.getRuntime().availableProcessors();
+        this.workers = new ForkJoinPool(parallelism);
+        log.info("Evaluating with {} worker threads", parallelism);
+    }
+
+    /**Lets every individual play one game on each of the shared piece sequences and records mean and variance
+     * of its fitness. With rejection enabled the games are played in rounds, and after each round individuals
+     * that are clearly worse than the leader play no further games, once every individual played
+     * minGamesBeforeRejection games. Results are recorded in a fixed order after each round, so the statistics
+     * don't depend on which game finished first.
+     * @return the game with the highest fitness, the first one played of equally fit games*/
+    public GameResult evaluate(Individual[] population, Tetris view, PieceSequence[] sequences, TopK leaderboard,
+                         EarlyStopping stopping) {
+        long start = System.nanoTime(), steals = workers.getStealCount();
+        int[] active = new int[population.length];
+        for (int id = 0; id < population.length; id++) {
+            population[id].resetResults();
+            active[id] = id;
+        }
+        int activeCount = population.length, played = 0;
+        GameResult best = null;
+        while (played < sequences.length && activeCount > 0) {
+            int round = rejectWorseIndividuals ? Math.min(gamesPerRound, sequences.length - played) : sequences.length - played;
+            GameResult[] results = play(population, active, activeCount, view, sequences, played, round, stopping);
+            for (int a = 0; a < activeCount; a++) {
+                for (int g = 0; g < round; g++) {
+                    GameResult result = results[a * round + g];
+                    population[active[a]].record(result);
+                    if (best == null || result.fitness() > best.fitness()) {
+                        best = result;
+                    }
+                }
+            }
+            played += round;
+            if (rejectWorseIndividuals && played >= minGamesBeforeRejection && played < sequences.length) {
+                activeCount = reject(population, active, activeCount);
+            }
+        }
+        for (int id = 0; id < population.length; id++) {
+            leaderboard.offer(population[id].fitness, id);
+            Metrics.individualLatency.record(population[id].evaluationNanos);
+        }
+        Metrics.recordEvaluation(System.nanoTime() - start, parallelism, workers.getStealCount() - steals);
+        return best;
+    }
+
+    // plays games first .. first + round - 1 of every active individual
+    private GameResult[] play(Individual[] population, int[] active, int count, Tetris view, PieceSequence[] sequences,
+                              int first, int round, EarlyStopping stopping) {
+        GameResult[] results = new GameResult[count * round];
+        List<Callable<GameResult>> games = new ArrayList<>(results.length);
+        for (int a = 0; a < count; a++) {
+            for (int g = 0; g < round; g++) {
+                final int slot = a * round + g;
+                final Individual individual = population[active[a]];
+                final PieceSequence pieces = sequences[first + g];
+                games.add(() -> results[slot] = individual.playGame(view, pieces, stopping));
+            }
+        }
+        // INFO: only waits for all games, the results are recorded afterwards
+        try {
+            for (Future<GameResult> game : workers.invokeAll(games)) {
+                game.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException(e);
+        }
+        return results;
+    }
+
+    // drops every individual whose confidence interval lies entirely below the one of the current leader
+    private int reject(Individual[] population, int[] active, int count) {
+        Individual leader = population[active[0]];
+        for (int a = 1; a < count; a++) {
+            if (population[active[a]].fitness > leader.fitness) {
+                leader = population[active[a]];
+            }
+        }
+        double bar = leader.fitness - leader.confidence();
+        int kept = 0;
+        for (int a = 0; a < count; a++) {
+            Individual individual = population[active[a]];
+            if (individual.fitness + individual.confidence() < bar) {
+                individual.rejected = true;
+            } else {
+                active[kept++] = active[a];
+            }
+        }
+        return kept;
+    }
+}
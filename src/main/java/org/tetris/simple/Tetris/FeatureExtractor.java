@@ -0,0 +1,43 @@
+package org.tetris.simple.Tetris;
+
+/**Computes the heuristics fed into the neural network in a single pass over the column heights a
+ * {@link Well} keeps up to date. Holes follow from the heights and the number of occupied cells, so the
+ * board itself is never scanned.*/
+public final class FeatureExtractor {
+    // positions in the feature vector, in the order the network expects them
+    public static final int HOLES = 0;
+    public static final int MIN_HEIGHT = 1;
+    public static final int MAX_HEIGHT = 2;
+    public static final int HEIGHT_DIFFERENCE = 3;
+    public static final int LINES_CLEARED = 4;
+    public static final int FEATURE_COUNT = 5;
+
+    private FeatureExtractor() {
+    }
+
+    /**Writes the features of a well into the given vector.
+     * @param linesBefore lines the well had cleared before the evaluated drop
+     * @param features vector with at least {@link #FEATURE_COUNT} entries*/
+    public static void extract(Well well, long linesBefore, double[] features) {
+        extract(well, linesBefore, features, 0, 1);
+    }
+
+    /**Writes the features of a well into a strided slot of a larger matrix, feature k goes to
+     * features[offset + k * stride]. Used to fill one column of a feature-major batch.*/
+    public static void extract(Well well, long linesBefore, double[] features, int offset, int stride) {
+        int[] heights = well.heights;
+        int min = heights[0], max = heights[0], total = heights[0], heightDifference = 0;
+        for (int i = 1; i < heights.length; i++) {
+            int height = heights[i];
+            if (height < min) min = height;
+            if (height > max) max = height;
+            total += height;
+            heightDifference += Math.abs(height - heights[i - 1]);
+        }
+        features[offset + HOLES * stride] = total - well.filledCells;
+        features[offset + MIN_HEIGHT * stride] = min;
+        features[offset + MAX_HEIGHT * stride] = max;
+        features[offset + HEIGHT_DIFFERENCE * stride] = heightDifference;
+        features[offset + LINES_CLEARED * stride] = well.linesCleared - linesBefore;
+    }
+}
@@ -0,0 +1,473 @@
+package org.tetris.simple.Tetris;
+
+import lombok.extern.slf4j.Slf4j;
+import org.tetris.simple.Metrics.Metrics;
+import org.tetris.simple.Network.NeuralNetwork;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinTask;
+import java.util.random.RandomGenerator;
+
+import static org.tetris.simple.Utils.Config.*;
+import static org.tetris.simple.Utils.TetrisColors.*;
+
+/**A single game of Tetris played by a neural network. The game drives its {@link Well} directly and
+ * needs no Swing component, a {@link Tetris} view can optionally be attached to watch it.*/
+@Slf4j
+public class Game {
+    protected final Well well;
+    private final NeuralNetwork neuralNetwork;
+
+    // optional view, null when the game runs headless, and whether it currently follows this game
+    private Tetris view;
+    private boolean shown;
+    private int id, generation;
+
+    // scratch state of the move search, allocated once per game
+    private final Well searchWell;
+    private final int[] candidateX, candidateY, candidateRotation;
+    private final long[] candidateKeys;
+    private final double[] candidateInputs, candidateScores;
+    // batch column each candidate is scored in (-1 = taken from the cache) and the keys of those columns
+    private final int[] candidateSource;
+    private final long[] missKeys;
+    private final double[] missScores;
+
+    // scores of boards this game has already seen, null if caching is disabled
+    protected final EvaluationCache cache;
+
+    // INFO: lookahead over the known upcoming pieces, one search per beam slot so the slots can run in parallel.
+    //  null when only the current piece is searched.
+    private final LookaheadSearch[] lookahead;
+    private final int[] upcoming, beam;
+    private final double[] lookaheadValues;
+
+    // moves still queued for the current piece, rotations first and then shifts
+    private int pendingRotations, pendingShifts, shiftMove;
+
+    // limits under which the game ends early, the number of pieces placed so far and why the game ended
+    private EarlyStopping stopping = EarlyStopping.NONE;
+    private int pieces;
+    protected Death death;
+    // work of the move search, added to the Metrics once the game is over, and the wall time of the game (ns)
+    private long candidates, boardsScored, batches;
+    private long nanos;
+
+    public Game(NeuralNetwork neuralNetwork) {
+        this(neuralNetwork, new Random());
+    }
+
+    /**@param pieceRandom shuffles the bags of pieces, the same seed plays the same piece sequence*/
+    public Game(NeuralNetwork neuralNetwork, RandomGenerator pieceRandom) {
+        this(neuralNetwork, pieceRandom, null, evaluationCacheSize);
+    }
+
+    /**@param pieces pre-generated pieces the game plays, may be shared with other games*/
+    public Game(NeuralNetwork neuralNetwork, PieceSequence pieces) {
+        this(neuralNetwork, null, pieces, evaluationCacheSize);
+    }
+
+    /**@param cacheSize slots of the evaluation cache, 0 disables it, e.g. to benchmark the uncached search*/
+    Game(NeuralNetwork neuralNetwork, RandomGenerator pieceRandom, int cacheSize) {
+        this(neuralNetwork, pieceRandom, null, cacheSize);
+    }
+
+    private Game(NeuralNetwork neuralNetwork, RandomGenerator pieceRandom, PieceSequence pieces, int cacheSize) {
+        this.neuralNetwork = neuralNetwork;
+        this.well = new Well(10, 20, COLOR_2.color);
+        if (pieces != null) {
+            this.well.sequence = pieces;
+        } else {
+            this.well.pieceRandom = pieceRandom;
+        }
+        this.well.newPiece();
+        this.searchWell = well.copy();
+        int maxCandidates = well.wellWidth * 4;
+        this.candidateX = new int[maxCandidates];
+        this.candidateY = new int[maxCandidates];
+        this.candidateRotation = new int[maxCandidates];
+        this.candidateKeys = new long[maxCandidates];
+        this.candidateInputs = new double[FeatureExtractor.FEATURE_COUNT * maxCandidates];
+        this.candidateScores = new double[maxCandidates];
+        this.candidateSource = new int[maxCandidates];
+        this.missKeys = new long[maxCandidates];
+        this.missScores = new double[maxCandidates];
+        this.cache = cacheSize > 0 ? new EvaluationCache(cacheSize) : null;
+        if (lookaheadDepth > 1) {
+            this.lookahead = new LookaheadSearch[beamWidth];
+            for (int slot = 0; slot < beamWidth; slot++) {
+                lookahead[slot] = new LookaheadSearch(neuralNetwork, well, lookaheadDepth - 1, beamWidth, cacheSize);
+            }
+            this.upcoming = new int[lookaheadDepth - 1];
+            this.beam = new int[beamWidth];
+            this.lookaheadValues = new double[maxCandidates];
+        } else {
+            this.lookahead = null;
+            this.upcoming = null;
+            this.beam = null;
+            this.lookaheadValues = null;
+        }
+    }
+
+    /**Offers the game to a view, which shows it while it doesn't follow another game. id and generation of the
+     * individual are shown along with it.*/
+    public void attach(Tetris view, int id, int generation) {
+        this.view = view;
+        this.id = id;
+        this.generation = generation;
+    }
+
+    public void limit(EarlyStopping stopping) {
+        this.stopping = stopping;
+    }
+
+    // records the pieces the game locks into the replay, which is part of the result then
+    public void record(Replay replay) {
+        well.replay = replay;
+    }
+
+    public void play() {
+        // INFO: pieces are placed in one go unless the shown game is slowed down to watch every tick
+        play(placementMode && !reasonableSpeed);
+    }
+
+    // plays the game with hard-dropped placements or tick by tick, both play exactly the same game
+    void play(boolean placements) {
+        long start = System.nanoTime();
+        if (placements) {
+            playPlacements();
+        } else {
+            playTicks();
+        }
+        if (death == null) {
+            death = well.gameOver ? Death.NATURAL : Death.TIMED;
+        }
+        if (shown) {
+            view.publish(well, id, generation, true);
+            view.release(this);
+        }
+        nanos = System.nanoTime() - start;
+        if (well.replay != null) {
+            well.replay.finish(well, death);
+        }
+        recordMetrics();
+    }
+
+    private void recordMetrics() {
+        long candidates = this.candidates, scored = boardsScored, batches = this.batches, copies = searchWell.copies;
+        if (lookahead != null) {
+            for (LookaheadSearch search : lookahead) {
+                candidates += search.candidates;
+                scored += search.boardsScored;
+                batches += search.batches;
+                copies += search.copies();
+            }
+        }
+        Metrics.recordGame(pieces, candidates, scored, batches, copies, nanos);
+    }
+
+    public GameResult result() {
+        long hits = cache != null ? cache.getHits() : 0, misses = cache != null ? cache.getMisses() : 0;
+        if (lookahead != null) {
+            for (LookaheadSearch search : lookahead) {
+                if (search.cache != null) {
+                    hits += search.cache.getHits();
+                    misses += search.cache.getMisses();
+                }
+            }
+        }
+        return new GameResult(well.fitness(), well.score, well.linesCleared, well.lifeTime, death, hits, misses, nanos, well.replay);
+    }
+
+    private void playTicks() {
+        while (!well.gameOver && well.lifeTime < timeOut) {
+            // 1. Create moves if the current piece is new
+            if (well.newPiece && !hasPendingMoves()) {
+                if (stoppedEarly()) {
+                    return;
+                }
+                well.newPiece = false;
+                movesForBestPiece();
+            }
+            // 2. Execute queued moves
+            if (hasPendingMoves()) {
+                movePiece(nextMove());
+            }
+            // 3. let the piece drop till it gets set
+            update();
+
+            // INFO: headless games skip rendering and pacing entirely
+            if (view != null && show() && reasonableSpeed) {
+                try {
+                    Thread.sleep(gameSpeed);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+    }
+
+    /**Runs the same state machine as the tick loop, but collapses the gravity ticks after the last queued move
+     * into a single hard drop. Queued moves still take one tick each, so a move that gets blocked on the way
+     * down behaves exactly as before and lifeTime ends up identical.*/
+    private void playPlacements() {
+        while (!well.gameOver && well.lifeTime < timeOut) {
+            if (well.newPiece && !hasPendingMoves()) {
+                if (stoppedEarly()) {
+                    return;
+                }
+                well.newPiece = false;
+                movesForBestPiece();
+            }
+            if (hasPendingMoves()) {
+                movePiece(nextMove());
+                update();
+            } else if (!well.newPiece) {
+                hardDrop();
+                if (view != null) {
+                    show();
+                }
+            }
+        }
+    }
+
+    /**Publishes a snapshot if the view follows this game, which costs nothing between two frames. In spectator
+     * mode the view only picks up games that have lived past the spectator limit.
+     * @return whether the view follows this game*/
+    private boolean show() {
+        if (!shown && (!spectatorMode || well.lifeTime > spectatorLimit)) {
+            shown = view.follow(this);
+        }
+        if (shown) {
+            view.publish(well, id, generation, false);
+        }
+        return shown;
+    }
+
+    // checked before every new piece, counts the piece if the game goes on
+    private boolean stoppedEarly() {
+        death = stopping.check(well, pieces, timeOut);
+        if (death != null) {
+            return true;
+        }
+        pieces++;
+        return false;
+    }
+
+    // Drops the piece to its landing row and fixes it, counting every tick gravity would have taken
+    private void hardDrop() {
+        int distance = well.dropDistance();
+        int remainingTicks = timeOut - well.lifeTime;
+        if (distance >= remainingTicks) {
+            // times out while still falling
+            well.pieceOrigin.y += remainingTicks;
+            well.lifeTime += remainingTicks;
+            return;
+        }
+        well.pieceOrigin.y += distance;
+        well.lifeTime += distance;
+        // the last tick fixes the piece
+        update();
+    }
+
+    protected void update() {
+        well.dropDown();
+        well.lifeTime++;
+    }
+
+    protected void movePiece(int move) {
+        switch (move) {
+            // up
+            case -1:
+                well.rotate(-1);
+                break;
+            // down
+            case 1:
+                well.rotate(+1);
+                break;
+            // left
+            case -2:
+                well.move(-1);
+                break;
+            // right
+            case 2:
+                well.move(1);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /* MOVE CALCULATION */
+
+    /**Scores every reachable (x, rotation) drop of the current piece with the neural network and queues the
+     * moves towards the best one. Candidates are dropped on a single scratch well and every board that isn't
+     * cached yet is scored in one batched forward pass, so the search allocates nothing per candidate.
+     * With a lookahead the best drops are then valued by the best placements of the known upcoming pieces.*/
+    public void movesForBestPiece() {
+        // 1. drop every valid starting position on the scratch well and collect its features
+        int count = 0, misses = 0;
+        for (int startX = 0; startX < well.wellWidth; startX++) {
+            for (int startRot = 0; startRot <= 3; startRot++) {
+                // all pieces start dropping at y = 2
+                if (!well.doesntCollideAt(startX, 2, startRot)) {
+                    continue;
+                }
+                int y = well.landingRow(startX, 2, startRot);
+                searchWell.copyFrom(well);
+                searchWell.lockPiece(startX, y, startRot);
+                candidateX[count] = startX;
+                candidateY[count] = y;
+                candidateRotation[count] = startRot;
+
+                // the score only depends on the resulting board and the lines the drop cleared
+                long key = searchWell.hash ^ Zobrist.linesKey((int) (searchWell.linesCleared - well.linesCleared));
+                candidateKeys[count] = key;
+                if (cache != null) {
+                    int pending = pendingBoard(key, misses);
+                    if (pending >= 0) {
+                        // INFO: the same board was already queued for this piece (e.g. a symmetric rotation)
+                        cache.hits++;
+                        candidateSource[count++] = pending;
+                        continue;
+                    }
+                    double cached = cache.get(key);
+                    if (!Double.isNaN(cached)) {
+                        candidateScores[count] = cached;
+                        candidateSource[count++] = -1;
+                        continue;
+                    }
+                }
+
+                // INFO: unscaled scores, one column of the feature-major batch per board the network has to score
+                FeatureExtractor.extract(searchWell, well.linesCleared, candidateInputs, misses, candidateX.length);
+                missKeys[misses] = key;
+                candidateSource[count++] = misses++;
+            }
+        }
+
+        // 2. feed all boards that weren't cached into the NN at once
+        neuralNetwork.evaluateBatch(candidateInputs, candidateX.length, misses, missScores);
+        candidates += count;
+        boardsScored += misses;
+        batches++;
+        for (int i = 0; i < count; i++) {
+            if (candidateSource[i] >= 0) {
+                candidateScores[i] = missScores[candidateSource[i]];
+            }
+        }
+        if (cache != null) {
+            for (int m = 0; m < misses; m++) {
+                cache.put(missKeys[m], missScores[m]);
+            }
+        }
+
+        // 3. value the best candidates by what the upcoming pieces can make of them
+        double[] values = candidateScores;
+        if (lookahead != null && count > 0) {
+            values = lookahead(count);
+        }
+
+        // 4. keep the best candidate, ties go to the one with fewer moves
+        double highestScore = -99999;
+        // INFO: without a better candidate the piece drops where it spawned
+        int bestX = 4, bestRotation = 0, bestMoveCount = 0;
+        for (int i = 0; i < count; i++) {
+            double evalScore = values[i];
+            int moveCount = candidateRotation[i] + Math.abs(candidateX[i] - 4);
+            if (evalScore == highestScore) {
+                if (moveCount < bestMoveCount) {
+                    bestX = candidateX[i];
+                    bestRotation = candidateRotation[i];
+                    bestMoveCount = moveCount;
+                }
+            } else if (evalScore > highestScore) {
+                highestScore = evalScore;
+                bestX = candidateX[i];
+                bestRotation = candidateRotation[i];
+                bestMoveCount = moveCount;
+            }
+        }
+
+        queueMoves(bestX, bestRotation);
+    }
+
+    /**Searches the beam of the best first-ply candidates with the known upcoming pieces. Candidates outside the
+     * beam are valued negative infinity, duplicates of a beam board share its value. Falls back to the first-ply
+     * scores if the upcoming pieces aren't known or every searched board tops out.*/
+    private double[] lookahead(int count) {
+        int known = 0;
+        while (known < upcoming.length && well.peek(known) >= 0) {
+            upcoming[known] = well.peek(known);
+            known++;
+        }
+        if (known == 0) {
+            return candidateScores;
+        }
+
+        int beamSize = LookaheadSearch.selectBeam(candidateScores, candidateKeys, count, beam, lookahead.length);
+        for (int b = 0; b < beamSize; b++) {
+            int c = beam[b];
+            lookahead[b].prepare(well, candidateX[c], candidateY[c], candidateRotation[c], upcoming, known);
+        }
+        // INFO: games already run in the worker pool, the beam slots are forked into it as well
+        if (parallelLookahead && beamSize > 1 && ForkJoinTask.inForkJoinPool()) {
+            for (int b = 1; b < beamSize; b++) {
+                lookahead[b].fork();
+            }
+            lookahead[0].invoke();
+            for (int b = beamSize - 1; b >= 1; b--) {
+                lookahead[b].join();
+            }
+        } else {
+            for (int b = 0; b < beamSize; b++) {
+                lookahead[b].invoke();
+            }
+        }
+
+        boolean alive = false;
+        for (int i = 0; i < count; i++) {
+            lookaheadValues[i] = Double.NEGATIVE_INFINITY;
+            for (int b = 0; b < beamSize; b++) {
+                if (candidateKeys[beam[b]] == candidateKeys[i]) {
+                    lookaheadValues[i] = lookahead[b].value;
+                    alive |= lookahead[b].value > Double.NEGATIVE_INFINITY;
+                }
+            }
+        }
+        return alive ? lookaheadValues : candidateScores;
+    }
+
+    // batch column that already holds the board with the given key, -1 if there is none
+    private int pendingBoard(long key, int misses) {
+        for (int m = 0; m < misses; m++) {
+            if (missKeys[m] == key) {
+                return m;
+            }
+        }
+        return -1;
+    }
+
+    private void queueMoves(int targetX, int targetRotation) {
+        // INFO: everything < 4 needs to move left
+        //  everything > 4 needs to move right
+        int requiredDirectionalMoves = targetX - 4;
+        shiftMove = requiredDirectionalMoves < 0 ? -2 : 2;
+        // rotational moves go first in order to avoid problems with the edge of the well
+        pendingRotations = targetRotation;
+        pendingShifts = Math.abs(requiredDirectionalMoves);
+    }
+
+    private boolean hasPendingMoves() {
+        return pendingRotations > 0 || pendingShifts > 0;
+    }
+
+    private int nextMove() {
+        if (pendingRotations > 0) {
+            pendingRotations--;
+            return 1;
+        }
+        pendingShifts--;
+        return shiftMove;
+    }
+}
@@ -0,0 +1,7 @@
+package org.tetris.simple.Tetris;
+
+/**Outcome of a single game, recorded by the individual that played it. nanos is the wall time of the game and
+ * replay its recording, null if it wasn't recorded.*/
+public record GameResult(double fitness, long score, long linesCleared, int lifeTime, Death death,
+                         long cacheHits, long cacheMisses, long nanos, Replay replay) {
+}
@@ -1,26 +1,130 @@
 package org.tetris.simple.Tetris;
 
 import lombok.extern.slf4j.Slf4j;
+import org.tetris.simple.Island.Migration;
+import org.tetris.simple.Metrics.MetricsReporter;
+import org.tetris.simple.Storage.Checkpoint;
+import org.tetris.simple.Storage.GenerationLog;
+import org.tetris.simple.Utils.Config;
+
+import java.nio.file.Path;
 
 import static org.tetris.simple.Utils.Config.*;
 
 @Slf4j
 public class GeneticTetris {
+    private final int populationSize, generationCount;
+    private final boolean headless;
+    // set when this process is one island of a distributed run
+    private final Migration migration;
+    private final Path checkpoints;
+    // per-individual records of every generation, null if they aren't logged
+    private final Path history;
+    // the best game of every generation is saved here as a replay, null if games aren't recorded
+    private final Path replays;
+    // where the metrics of every generation go, see MetricsReporter
+    private final String metricsOutput;
+    private final int metricsServerPort;
+
+    public GeneticTetris() {
+        this.populationSize = Config.populationSize;
+        this.generationCount = Config.generationCount;
+        this.headless = Config.headless;
+        this.migration = null;
+        this.checkpoints = Path.of(checkpointDirectory);
+        this.history = generationLog.isEmpty() ? null : Path.of(generationLog);
+        this.replays = replayDirectory.isEmpty() ? null : Path.of(replayDirectory);
+        this.metricsOutput = metricsFile;
+        this.metricsServerPort = metricsPort;
+    }
+
+    /**Runs one island of an island-model run. Islands are always headless and exchange their best genomes
+     * through the given migration every {@link Config#migrationInterval} generations.*/
+    public GeneticTetris(Migration migration, int populationSize, int generationCount) {
+        this.populationSize = populationSize;
+        this.generationCount = generationCount;
+        this.headless = true;
+        this.migration = migration;
+        this.checkpoints = migration.checkpointDirectory();
+        this.history = generationLog.isEmpty() ? null : migration.islandFile(generationLog);
+        this.replays = replayDirectory.isEmpty() ? null : migration.islandFile(replayDirectory);
+        // INFO: islands usually share a machine, each one serves its metrics on its own port
+        this.metricsOutput = metricsFile.isEmpty() ? "" : migration.islandFile(metricsFile).toString();
+        this.metricsServerPort = metricsPort > 0 ? metricsPort + migration.island() : 0;
+    }
+
+    /**@return the population after the last generation was bred*/
+    public Population runGeneticTetris() {
+        Population population = createPopulation();
+        // INFO: headless runs never create a frame, individuals play without any rendering
+        if (!headless) {
+            population.setupFrame();
+        }
+        try (MetricsReporter metrics = new MetricsReporter(metricsOutput, metricsServerPort);
+             GenerationLog generations = history != null ? new GenerationLog(history) : null) {
+            while (population.generation <= generationCount) {
+                runGeneration(population, metrics, generations);
+            }
+        }
+        return population;
+    }
 
-    public void runGeneticTetris() {
-        Population population = new Population(populationSize);
-        population.setupFrame();
-        for (int i = 0; i < generationCount; i++) {
-            population.naturalDeaths = 0;
-            population.timedDeaths = 0;
-            population.runCurrentPopulation();
-            // Logging for evaluation
-            double avgFitness = population.fitnessScores.stream().mapToDouble(a -> a).sum() / population.population.length;
-            log.info("Best fitness for generation \t\t{}: player \t{} with \t{}", population.generation, population.best_individual.id, population.best_fitness_score);
-            log.info("Average fitness for generation \t{}: {}", population.generation, avgFitness);
-            log.info("Death distribution \tGen:{} \tnatural: {} \t timed: {}", population.generation, population.naturalDeaths, population.timedDeaths);
-            population.populateNextGeneration();
+    // evaluates, logs and breeds one generation
+    private void runGeneration(Population population, MetricsReporter metrics, GenerationLog history) {
+        metrics.startGeneration();
+        population.naturalDeaths = 0;
+        population.timedDeaths = 0;
+        population.budgetDeaths = 0;
+        population.hopelessDeaths = 0;
+        population.wallClockDeaths = 0;
+        population.rejectedIndividuals = 0;
+        population.cacheHits = 0;
+        population.cacheMisses = 0;
+        population.runCurrentPopulation();
+        if (history != null) {
+            history.append(population.records());
+        }
+        Replay replay = population.bestGame != null ? population.bestGame.replay() : null;
+        if (replays != null && replay != null) {
+            replay.write(replays.resolve("generation-" + population.generation + ".replay"));
+        }
+        // Logging for evaluation
+        double avgFitness = population.totalFitnessScore / population.population.length;
+        log.info("Best fitness for generation \t\t{}: player \t{} with \t{}", population.generation, population.best_individual.id, population.best_fitness_score);
+        log.info("Average fitness for generation \t{}: {}", population.generation, avgFitness);
+        log.info("Death distribution \tGen:{} \tnatural: {} \t timed: {}", population.generation, population.naturalDeaths, population.timedDeaths);
+        log.info("Early stops \t\tGen:{} \tpiece budget: {} \t hopeless: {} \t wall clock: {}", population.generation,
+                population.budgetDeaths, population.hopelessDeaths, population.wallClockDeaths);
+        if (gamesPerIndividual > 1) {
+            Individual best = population.best_individual;
+            log.info("Fitness spread \tGen:{} \tbest: {} +/- {} (sd {}) \t rejected: {}", population.generation, best.fitness,
+                    best.confidence(), Math.sqrt(best.fitnessVariance()), population.rejectedIndividuals);
+        }
+        log.info("Evaluation cache \tGen:{} \thits: {} \t misses: {}", population.generation, population.cacheHits, population.cacheMisses);
+        // islands send their best individuals before breeding and take in their neighbour's right after
+        boolean migrating = migration != null && population.generation % migrationInterval == 0;
+        int evaluatedGeneration = population.generation;
+        if (migrating) {
+            migration.emigrate(evaluatedGeneration, population.topGenomes(migrationSize));
         }
+        population.populateNextGeneration();
+        if (migrating) {
+            population.immigrate(migration.immigrate(evaluatedGeneration));
+        }
+        // INFO: written after breeding, so a resumed run starts right with the evaluation of the next generation
+        if (Checkpoint.due(evaluatedGeneration, checkpointInterval)) {
+            population.checkpoint().write(checkpoints, checkpointsKept);
+        }
+        metrics.endGeneration(evaluatedGeneration);
     }
 
+    private Population createPopulation() {
+        Checkpoint checkpoint = resumeFromCheckpoint ? Checkpoint.latest(checkpoints) : null;
+        if (checkpoint != null) {
+            return new Population(checkpoint);
+        }
+        return migration == null
+                ? new Population(populationSize)
+                : new Population(populationSize, migration.islandSeed());
+    }
 }
@@ -0,0 +1,177 @@
+package org.tetris.simple.Tetris;
+
+import lombok.extern.slf4j.Slf4j;
+import org.tetris.simple.Network.NeuralNetwork;
+import org.tetris.simple.Storage.GenomeStore;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+import static org.tetris.simple.Utils.Config.replayDirectory;
+
+/**A single member of the population. It holds the neural network that decides its moves and the
+ * results of the last game it played, but no Swing component, so it can be evaluated headless.*/
+@Slf4j
+public class Individual {
+    protected int id, generation;
+    // ids of the individuals this one was bred from, -1 if they aren't known
+    protected int firstParent = -1, secondParent = -1;
+
+    // Neural Network
+    NeuralNetwork neuralNetwork;
+    // INFO: set when the genome lives in a GenomeStore, neuralNetwork is null then and the network is only
+    //  built from the record while it is needed. A view is valid until its slot is bred into again.
+    private GenomeStore store;
+    private int slot, record;
+
+    // results of the last evaluation, summed up over its games
+    protected long score, linesCleared, lifeTime;
+    protected final int[] deaths = new int[Death.values().length];
+    protected long cacheHits, cacheMisses;
+    // wall time of the games, summed up (ns)
+    protected long evaluationNanos;
+    // INFO: fitness is the mean fitness of the games recorded so far and fitnessM2 the sum of squared deviations
+    //  from it (Welford), both are updated one game at a time
+    protected int games;
+    protected double fitness, fitnessM2;
+    // evaluation was stopped because the individual was clearly worse than the leader
+    protected boolean rejected;
+
+    /**Plays one game without recording it, so several games of an individual can run at the same time.
+     * @param view optional view to watch the game on, null to play headless
+     * @param pieces piece sequence of this game
+     * @param stopping limits under which the game is ended early*/
+    public GameResult playGame(Tetris view, PieceSequence pieces, EarlyStopping stopping) {
+        Game game = new Game(network(), pieces);
+        game.limit(stopping);
+        if (!replayDirectory.isEmpty()) {
+            game.record(new Replay(this.generation, this.id));
+        }
+        if (view != null) {
+            game.attach(view, this.id, this.generation);
+        }
+        game.play();
+        return game.result();
+    }
+
+    // forgets the results of the previous evaluation
+    void resetResults() {
+        score = linesCleared = lifeTime = cacheHits = cacheMisses = evaluationNanos = 0;
+        Arrays.fill(deaths, 0);
+        games = 0;
+        fitness = fitnessM2 = 0;
+        rejected = false;
+    }
+
+    void record(GameResult result) {
+        games++;
+        double delta = result.fitness() - fitness;
+        fitness += delta / games;
+        fitnessM2 += delta * (result.fitness() - fitness);
+        score += result.score();
+        linesCleared += result.linesCleared();
+        lifeTime += result.lifeTime();
+        deaths[result.death().ordinal()]++;
+        cacheHits += result.cacheHits();
+        cacheMisses += result.cacheMisses();
+        evaluationNanos += result.nanos();
+    }
+
+    // sample variance of the fitness over the recorded games
+    double fitnessVariance() {
+        return games > 1 ? fitnessM2 / (games - 1) : 0;
+    }
+
+    // half width of the 95% confidence interval of the mean fitness (Student's t), unbounded below 2 games
+    double confidence() {
+        return games > 1 ? tQuantile(games - 1) * Math.sqrt(fitnessVariance() / games) : Double.POSITIVE_INFINITY;
+    }
+
+    // INFO: two-sided 95% quantiles of Student's t distribution for 1 to 30 degrees of freedom
+    private static final double[] tQuantiles = {12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+            2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+            2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042};
+
+    // beyond the table the first order expansion around the normal quantile is accurate to the third digit
+    static double tQuantile(int degreesOfFreedom) {
+        return degreesOfFreedom <= tQuantiles.length ? tQuantiles[degreesOfFreedom - 1] : 1.96 + 2.372 / degreesOfFreedom;
+    }
+
+    // Rules for hidden node count:
+    // https://medium.com/geekculture/introduction-to-neural-network-2f8b8221fbd3#:~:text=Number%20of%20Neurons%20and%20Number%20of%20Layers%20in%20Hidden%20Layer&text=The%20number%20of%20hidden%20neurons,size%20of%20the%20output%20layer.
+    public void initNeuralNetwork(int id, int generation) {
+        neuralNetwork = createNetwork();
+        this.id = id;
+        this.generation = generation;
+    }
+
+    static NeuralNetwork createNetwork() {
+        return new NeuralNetwork(5, 4, 1, 1);
+    }
+
+    /**Creates a view of a stored genome, nothing but the position of the record is kept on the heap.*/
+    static Individual view(GenomeStore store, int slot, int record, int generation) {
+        Individual individual = new Individual();
+        individual.id = store.id(slot, record);
+        individual.generation = generation;
+        individual.store = store;
+        individual.slot = slot;
+        individual.record = record;
+        return individual;
+    }
+
+    // the network of this individual, built from its record if it is stored
+    NeuralNetwork network() {
+        if (store == null) {
+            return neuralNetwork;
+        }
+        NeuralNetwork network = createNetwork();
+        double[] genome = new double[network.genomeLength()];
+        store.read(slot, record, genome);
+        network.loadGenome(genome);
+        return network;
+    }
+
+    // writes the genome into a record of the store and turns this individual into a view of it
+    void storeIn(GenomeStore store, int slot, int record) {
+        NeuralNetwork network = network();
+        double[] genome = new double[network.genomeLength()];
+        network.copyGenome(genome);
+        store.write(slot, record, id, genome);
+        this.store = store;
+        this.slot = slot;
+        this.record = record;
+        this.neuralNetwork = null;
+    }
+
+    protected Individual crossover(Individual parent, RandomGenerator random) {
+        Individual child = new Individual();
+        child.neuralNetwork = network().crossover(parent.network(), random);
+        return child;
+    }
+
+    // writes the crossover of this individual and the parent into the network of an existing child
+    protected Individual crossover(Individual parent, Individual child, RandomGenerator random) {
+        network().crossover(parent.network(), child.neuralNetwork, random);
+        return child;
+    }
+
+    // replaces the genome, a stored individual writes it straight into its record
+    void loadGenome(double[] genome) {
+        if (store != null) {
+            store.write(slot, record, id, genome);
+        } else {
+            neuralNetwork.loadGenome(genome);
+        }
+    }
+
+    protected void mutate(RandomGenerator random) {
+        neuralNetwork.mutate(random);
+    }
+
+    public Individual clone() {
+        Individual clone = new Individual();
+        clone.neuralNetwork = network().clone();
+        return clone;
+    }
+}
@@ -0,0 +1,208 @@
+package org.tetris.simple.Tetris;
+
+import org.tetris.simple.Network.NeuralNetwork;
+
+import java.util.concurrent.RecursiveAction;
+
+/**Values a first-ply placement by the best placements of the known upcoming pieces, searched to a fixed depth.
+ * Only the beamWidth best boards of a ply are searched further. Every ply has its own preallocated scratch
+ * wells and candidate buffers, so a search allocates nothing. An instance is used by one thread at a time, a
+ * game keeps one per beam slot and can run them as fork-join tasks.*/
+// INFO: ForkJoinTask is Serializable, but searches never leave the process they run in
+@SuppressWarnings("serial")
+class LookaheadSearch extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final NeuralNetwork neuralNetwork;
+    private final int beamWidth;
+    // scores of boards this search has already seen, null if caching is disabled
+    final EvaluationCache cache;
+
+    // board after the first-ply placement
+    private final Well root;
+    // per ply below the root: the board with the piece to place and the scratch board of a placement
+    private final Well[] bases, wells;
+    private final int[][] candidateX, candidateY, candidateRotation, beam;
+    private final long[][] candidateKeys;
+    private final double[][] candidateScores;
+    // one feature-major batch is enough, a ply scores all of its boards before it recurses
+    private final double[] inputs, batchScores;
+    private final int[] candidateSource;
+    private final long[] missKeys;
+
+    // task parameters, see prepare
+    private Well source;
+    private int x, y, rotation, count;
+    private int[] pieces;
+    double value;
+    // drops looked at, boards scored by the network and batched calls, summed over all searches of the game
+    long candidates, boardsScored, batches;
+
+    LookaheadSearch(NeuralNetwork neuralNetwork, Well template, int plies, int beamWidth, int cacheSize) {
+        this.neuralNetwork = neuralNetwork;
+        this.beamWidth = beamWidth;
+        this.cache = cacheSize > 0 ? new EvaluationCache(cacheSize) : null;
+        this.root = template.copy();
+        this.bases = new Well[plies];
+        this.wells = new Well[plies];
+        int maxCandidates = template.wellWidth * 4;
+        this.candidateX = new int[plies][maxCandidates];
+        this.candidateY = new int[plies][maxCandidates];
+        this.candidateRotation = new int[plies][maxCandidates];
+        this.candidateKeys = new long[plies][maxCandidates];
+        this.candidateScores = new double[plies][maxCandidates];
+        this.beam = new int[plies][beamWidth];
+        for (int ply = 0; ply < plies; ply++) {
+            bases[ply] = template.copy();
+            wells[ply] = template.copy();
+        }
+        this.inputs = new double[FeatureExtractor.FEATURE_COUNT * maxCandidates];
+        this.batchScores = new double[maxCandidates];
+        this.candidateSource = new int[maxCandidates];
+        this.missKeys = new long[maxCandidates];
+    }
+
+    /**Sets up the search of one first-ply placement, run it with {@link #invoke()} or as part of a fork-join batch.
+     * @param pieces upcoming pieces, pieces[0] is placed right after the first-ply piece
+     * @param count number of upcoming pieces to search*/
+    void prepare(Well source, int x, int y, int rotation, int[] pieces, int count) {
+        reinitialize();
+        this.source = source;
+        this.x = x;
+        this.y = y;
+        this.rotation = rotation;
+        this.pieces = pieces;
+        this.count = count;
+    }
+
+    @Override
+    protected void compute() {
+        root.copyFrom(source);
+        root.lockPiece(x, y, rotation);
+        value = searchPly(root, 0, source.linesCleared);
+    }
+
+    // best score reachable by placing pieces[ply..count-1] on the board, negative infinity if they top out
+    private double searchPly(Well board, int ply, long linesBefore) {
+        Well base = bases[ply], well = wells[ply];
+        base.copyFrom(board);
+        base.currentPiece = pieces[ply];
+        // INFO: the piece has to be able to spawn, otherwise the game is over
+        if (!base.doesntCollideAt(4, 3, 0)) {
+            return Double.NEGATIVE_INFINITY;
+        }
+
+        // 1. drop every valid starting position and batch the boards that aren't cached yet
+        int n = 0, misses = 0;
+        for (int startX = 0; startX < base.wellWidth; startX++) {
+            for (int startRot = 0; startRot <= 3; startRot++) {
+                if (!base.doesntCollideAt(startX, 2, startRot)) {
+                    continue;
+                }
+                int landing = base.landingRow(startX, 2, startRot);
+                well.copyFrom(base);
+                well.lockPiece(startX, landing, startRot);
+                // INFO: lines cleared since the root are part of the key, they are a feature of the board
+                long key = well.hash ^ Zobrist.linesKey((int) (well.linesCleared - linesBefore));
+                candidateX[ply][n] = startX;
+                candidateY[ply][n] = landing;
+                candidateRotation[ply][n] = startRot;
+                candidateKeys[ply][n] = key;
+                int pending = pendingBoard(key, misses);
+                if (pending >= 0) {
+                    candidateSource[n++] = pending;
+                    continue;
+                }
+                double cached = cache != null ? cache.get(key) : Double.NaN;
+                if (!Double.isNaN(cached)) {
+                    candidateScores[ply][n] = cached;
+                    candidateSource[n++] = -1;
+                    continue;
+                }
+                FeatureExtractor.extract(well, linesBefore, inputs, misses, batchScores.length);
+                missKeys[misses] = key;
+                candidateSource[n++] = misses++;
+            }
+        }
+
+        // 2. score the batch
+        neuralNetwork.evaluateBatch(inputs, batchScores.length, misses, batchScores);
+        candidates += n;
+        boardsScored += misses;
+        batches++;
+        double best = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            if (candidateSource[i] >= 0) {
+                candidateScores[ply][i] = batchScores[candidateSource[i]];
+            }
+            best = Math.max(best, candidateScores[ply][i]);
+        }
+        if (cache != null) {
+            for (int m = 0; m < misses; m++) {
+                cache.put(missKeys[m], batchScores[m]);
+            }
+        }
+        if (ply == count - 1) {
+            return best;
+        }
+
+        // 3. search the best distinct boards of this ply one piece deeper
+        int beamSize = selectBeam(candidateScores[ply], candidateKeys[ply], n, beam[ply], beamWidth);
+        best = Double.NEGATIVE_INFINITY;
+        for (int b = 0; b < beamSize; b++) {
+            int c = beam[ply][b];
+            well.copyFrom(base);
+            well.lockPiece(candidateX[ply][c], candidateY[ply][c], candidateRotation[ply][c]);
+            best = Math.max(best, searchPly(well, ply + 1, linesBefore));
+        }
+        return best;
+    }
+
+    // boards the scratch wells of this search were overwritten with
+    long copies() {
+        long copies = root.copies;
+        for (int ply = 0; ply < bases.length; ply++) {
+            copies += bases[ply].copies + wells[ply].copies;
+        }
+        return copies;
+    }
+
+    // batch column that already holds the board with the given key, -1 if there is none
+    private int pendingBoard(long key, int misses) {
+        for (int m = 0; m < misses; m++) {
+            if (missKeys[m] == key) {
+                return m;
+            }
+        }
+        return -1;
+    }
+
+    /**Writes the indices of the up to width best candidates into beam, best first. Ties go to the lower index
+     * and boards that are already in the beam (same key) are skipped.
+     * @return the number of selected candidates*/
+    static int selectBeam(double[] scores, long[] keys, int count, int[] beam, int width) {
+        int size = 0;
+        while (size < width) {
+            int best = -1;
+            for (int i = 0; i < count; i++) {
+                if ((best < 0 || scores[i] > scores[best]) && !contains(keys, beam, size, keys[i])) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            beam[size++] = best;
+        }
+        return size;
+    }
+
+    private static boolean contains(long[] keys, int[] beam, int size, long key) {
+        for (int b = 0; b < size; b++) {
+            if (keys[beam[b]] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,58 @@
+package org.tetris.simple.Tetris;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**An endless order of pieces, drawn bag by bag exactly like {@link Well#newPiece()} shuffles its bags.
+ * Sequences are generated once per generation and shared by any number of games. The first pieces are drawn up
+ * front, a game that gets past them draws further bags from the same random stream, so the order never repeats and
+ * doesn't depend on which game asked first.*/
+public class PieceSequence {
+    private final RandomGenerator random;
+    private final List<Integer> bag = new ArrayList<>(7);
+    // INFO: only grows, under the lock, and is republished as a whole, so reads need no lock
+    private volatile byte[] pieces;
+
+    public PieceSequence(RandomGenerator random, int length) {
+        this.random = random;
+        this.pieces = draw(new byte[0], Math.max(1, length));
+    }
+
+    public int piece(int index) {
+        byte[] drawn = pieces;
+        if (index >= drawn.length) {
+            drawn = grow(index);
+        }
+        return drawn[index];
+    }
+
+    /**@return the number of pieces drawn so far*/
+    public int length() {
+        return pieces.length;
+    }
+
+    private synchronized byte[] grow(int index) {
+        if (index >= pieces.length) {
+            pieces = draw(pieces, Math.max(index + 1, pieces.length * 2));
+        }
+        return pieces;
+    }
+
+    // appends whole bags to the drawn pieces until they hold at least length pieces
+    private byte[] draw(byte[] drawn, int length) {
+        int from = drawn.length;
+        byte[] grown = Arrays.copyOf(drawn, (length + 6) / 7 * 7);
+        for (int b = from; b < grown.length; b += 7) {
+            bag.clear();
+            Collections.addAll(bag, 0, 1, 2, 3, 4, 5, 6);
+            Collections.shuffle(bag, random);
+            for (int i = 0; i < 7; i++) {
+                grown[b + i] = bag.get(i).byteValue();
+            }
+        }
+        return grown;
+    }
+}
@@ -1,45 +1,163 @@
 package org.tetris.simple.Tetris;
 
 import lombok.extern.slf4j.Slf4j;
+import org.tetris.simple.Network.GenomePool;
+import org.tetris.simple.Network.NeuralNetwork;
+import org.tetris.simple.Storage.Checkpoint;
+import org.tetris.simple.Storage.GenerationRecords;
+import org.tetris.simple.Storage.GenomeStore;
+import org.tetris.simple.Utils.Config;
+import org.tetris.simple.Utils.Seeds;
+import org.tetris.simple.Utils.TopK;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.Collectors;
+import java.util.random.RandomGenerator;
+
+import static org.tetris.simple.Utils.Config.*;
 
 /**Manages the population of Tetris individuals. Each individual contains the logic to handle
  * the game as well as a neural network instance. The population class manages */
 @Slf4j
 public class Population {
-    Tetris[] population;
-    Tetris bestIndividual;
+    Individual[] population;
+    Individual bestIndividual;
 
     int generation = 1;
     double best_fitness_score = 0;
     double totalFitnessScore = 0;
-    Tetris best_individual;
+    Individual best_individual;
 
     // generational stats
-    int naturalDeaths = 0, timedDeaths = 0;
+    int naturalDeaths = 0, timedDeaths = 0, budgetDeaths = 0, hopelessDeaths = 0, wallClockDeaths = 0;
+    int rejectedIndividuals = 0;
+    long cacheHits = 0, cacheMisses = 0;
 
-    // contains a list of all fitness values in the current population
-    ArrayList<Double> fitnessScores = new ArrayList<>();
-    HashMap<Double, Tetris> topTetris = new HashMap<>();
+    // indices of the fittest individuals of the evaluated generation, also the elites of the next one
+    TopK leaderboard = new TopK(Math.max(topK, elitism));
+    // INFO: the leaderboard cutoff of the previous generation, hopeless games are judged against it instead of the
+    //  live one so that the result doesn't depend on the order in which games finish
+    double previousCutoff = Double.NEGATIVE_INFINITY;
+    // fittest single game of the evaluated generation, it carries a replay if games are recorded
+    GameResult bestGame;
 
+    // only set up when the run is watched, headless runs leave both null
     JFrame frame;
+    Tetris view;
+
+    Evaluator evaluator = new Evaluator(workerThreads);
+    Selection selection = new Selection(Config.selection, tournamentSize);
+
+    // every random decision of the run is derived from this seed
+    final Seeds seeds;
+
+    // memory-mapped genomes of the population, null keeps them on the heap
+    GenomeStore store;
+    // INFO: heap genomes live in the two arenas of a pool. population is bound to one arena and offspring to the
+    //  other, the two sets of individuals swap roles every generation instead of being reallocated.
+    GenomePool pool;
+    Individual[] offspring;
+    // arena or store slot that holds the current generation
+    int slot;
 
     public Population(int size) {
-        population = new Tetris[size];
+        this(size, Config.seed != 0 ? Config.seed : new SplittableRandom().nextLong());
+    }
+
+    public Population(int size, long seed) {
+        if (!genomeStore.isEmpty()) {
+            store = GenomeStore.open(Path.of(genomeStore), size, Individual.createNetwork().genomeLength());
+        }
+        if (store != null && store.generation() > 0) {
+            // a committed store already holds a bred generation, the run continues with it
+            seeds = new Seeds(store.seed());
+            generation = store.generation();
+            slot = store.activeSlot();
+            previousCutoff = store.cutoff();
+            log.info("Reopened generation {} of the run with seed {}", generation, seeds.seed());
+            population = new Individual[size];
+            offspring = new Individual[size];
+            for (int i = 0; i < size; i++) {
+                population[i] = Individual.view(store, slot, i, generation);
+            }
+            bestIndividual = population[0];
+            return;
+        }
+        log.info("Seed of this run: {}", seed);
+        seeds = new Seeds(seed);
+        allocateIndividuals(size);
         initPopulation();
     }
 
+    /**Continues a run from a checkpoint. The restored population breeds exactly the children the original run
+     * would have bred, as every stream is derived from the checkpointed seed and generation. With a genome store
+     * configured the checkpointed genomes are written into it and committed, so the run keeps its genomes off heap.*/
+    public Population(Checkpoint checkpoint) {
+        log.info("Resuming generation {} of the run with seed {}", checkpoint.generation, checkpoint.seed);
+        seeds = new Seeds(checkpoint.seed);
+        generation = checkpoint.generation;
+        previousCutoff = checkpoint.cutoff;
+        if (!genomeStore.isEmpty()) {
+            store = GenomeStore.open(Path.of(genomeStore), checkpoint.genomes.length, Individual.createNetwork().genomeLength());
+        }
+        allocateIndividuals(checkpoint.genomes.length);
+        for (int i = 0; i < population.length; i++) {
+            population[i].id = checkpoint.ids[i];
+            population[i].loadGenome(checkpoint.genomes[i]);
+            if (store != null) {
+                population[i].storeIn(store, slot, i);
+            }
+        }
+        if (store != null) {
+            store.commit(slot, generation, seeds.seed(), previousCutoff);
+        }
+        bestIndividual = population[0];
+    }
+
+    // creates the individuals of the run, heap individuals of both sets get bound to their record of the pool
+    private void allocateIndividuals(int size) {
+        population = new Individual[size];
+        offspring = new Individual[size];
+        if (store == null) {
+            pool = new GenomePool(size, Individual.createNetwork().genomeLength());
+        }
+        for (int i = 0; i < size; i++) {
+            population[i] = new Individual();
+            population[i].initNeuralNetwork(i, generation);
+            if (pool != null) {
+                offspring[i] = new Individual();
+                offspring[i].initNeuralNetwork(i, generation);
+                pool.bind(population[i].neuralNetwork, 0, i);
+                pool.bind(offspring[i].neuralNetwork, 1, i);
+            }
+        }
+    }
+
+    /**Snapshot of the freshly bred population together with the stats of the generation that bred it.*/
+    public Checkpoint checkpoint() {
+        int[] ids = new int[population.length];
+        double[][] genomes = new double[population.length][];
+        for (int i = 0; i < population.length; i++) {
+            ids[i] = population[i].id;
+            NeuralNetwork network = population[i].network();
+            genomes[i] = new double[network.genomeLength()];
+            network.copyGenome(genomes[i]);
+        }
+        // the leaderboard still holds the generation that was just evaluated, the new individuals carry no results
+        return new Checkpoint(generation, seeds.seed(), ids, genomes, leaderboard.best(),
+                totalFitnessScore / population.length, naturalDeaths, timedDeaths, previousCutoff);
+    }
+
     public void setupFrame() {
         frame = new JFrame("TetrisAI");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setSize(600, 700);
+        view = new Tetris(600, 700);
+        frame.add(view);
         frame.setVisible(true);
 
         try {
@@ -52,93 +170,183 @@ public class Population {
 
     public void initPopulation() {
         for (int i = 0; i < population.length; i++) {
-            population[i] = new Tetris();
+            population[i].neuralNetwork.rollInitialWeights(seeds.stream(generation, Seeds.WEIGHTS, i));
+            if (store != null) {
+                population[i].storeIn(store, slot, i);
+            }
+        }
+        if (store != null) {
+            store.commit(slot, generation, seeds.seed(), previousCutoff);
         }
         bestIndividual = population[0];
     }
 
     public void runCurrentPopulation() {
-        Tetris currentIndividual;
+        Individual currentIndividual;
         totalFitnessScore = 0;
+        leaderboard.clear();
         // lets each individual play until game over state is reached for final fitness score
+        bestGame = evaluator.evaluate(population, view, pieceSequences(), leaderboard, earlyStopping());
+        // stats are reduced in order of the ids once every game has finished
         for (int id = 0; id < population.length; id++) {
-            currentIndividual = population[id].playGame(id, generation, frame);
-
-            if (currentIndividual.naturalDeath) naturalDeaths++;
-            if (currentIndividual.timedDeath) timedDeaths++;
-
-            totalFitnessScore += currentIndividual.well.fitness();
-
-            final double currentFitnessScore = currentIndividual.well.fitness();
-            fitnessScores.add(currentFitnessScore);
-            // top 5 scores
-            if (topTetris.size() < 5) {
-                topTetris.put(currentFitnessScore, currentIndividual);
-            } else if (topTetris.keySet().stream().anyMatch(x -> x < currentFitnessScore)) {
-                double smallest = topTetris.keySet().stream().sorted().findFirst().orElse(0d);
-                topTetris.remove(smallest);
-                topTetris.put(currentFitnessScore, currentIndividual);
-            }
+            currentIndividual = population[id];
+
+            int[] deaths = currentIndividual.deaths;
+            naturalDeaths += deaths[Death.NATURAL.ordinal()];
+            timedDeaths += deaths[Death.TIMED.ordinal()];
+            budgetDeaths += deaths[Death.PIECE_BUDGET.ordinal()];
+            hopelessDeaths += deaths[Death.HOPELESS.ordinal()];
+            wallClockDeaths += deaths[Death.WALL_CLOCK.ordinal()];
+            if (currentIndividual.rejected) rejectedIndividuals++;
+            cacheHits += currentIndividual.cacheHits;
+            cacheMisses += currentIndividual.cacheMisses;
+
+            totalFitnessScore += currentIndividual.fitness;
+
+            final double currentFitnessScore = currentIndividual.fitness;
             // fitness is currently total score + time alive
             if (currentFitnessScore > best_fitness_score) {
                 best_fitness_score = currentFitnessScore;
                 best_individual = currentIndividual;
             }
         }
+        previousCutoff = leaderboard.cutoff();
+    }
+
+    /**Copies the results of the evaluated generation into a fresh set of records, e.g. for the GenerationLog.*/
+    public GenerationRecords records() {
+        GenerationRecords records = new GenerationRecords(generation, population.length);
+        for (int i = 0; i < population.length; i++) {
+            Individual individual = population[i];
+            records.ids()[i] = individual.id;
+            records.firstParents()[i] = individual.firstParent;
+            records.secondParents()[i] = individual.secondParent;
+            records.fitness()[i] = individual.fitness;
+            records.linesCleared()[i] = individual.linesCleared;
+            records.lifeTime()[i] = individual.lifeTime;
+            records.games()[i] = individual.games;
+            // the cause that ended most games, ties go to the first one
+            int death = 0;
+            for (int d = 1; d < individual.deaths.length; d++) {
+                if (individual.deaths[d] > individual.deaths[death]) {
+                    death = d;
+                }
+            }
+            records.deaths()[i] = (byte) death;
+        }
+        return records;
+    }
+
+    // INFO: every individual of a generation plays the same sequences, so fitness differences come from the
+    //  networks and not from luckier pieces
+    private PieceSequence[] pieceSequences() {
+        PieceSequence[] sequences = new PieceSequence[gamesPerIndividual];
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = new PieceSequence(seeds.stream(generation, Seeds.PIECES, i), pieceSequenceLength);
+        }
+        return sequences;
+    }
+
+    // limits of the games of the current generation
+    private EarlyStopping earlyStopping() {
+        int budget = pieceBudget > 0 ? pieceBudget + (generation - 1) * pieceBudgetGrowth : Integer.MAX_VALUE;
+        double cutoff = stopHopelessGames ? previousCutoff : Double.NEGATIVE_INFINITY;
+        long deadline = generationTimeBudget > 0 ? System.nanoTime() + generationTimeBudget * 1_000_000L : Long.MAX_VALUE;
+        return new EarlyStopping(budget, cutoff, deadline);
     }
 
-    private Tetris topFiveSelection() {
-        var keyList = topTetris.keySet().stream().sorted().collect(Collectors.toList()).reversed();
-        int key = ThreadLocalRandom.current().nextInt(0, 4);
-        return topTetris.get(keyList.get(key)).clone();
+    private Individual topFiveSelection(RandomGenerator random) {
+        int[] ranked = leaderboard.ranked();
+        return population[ranked[random.nextInt(0, ranked.length)]].clone();
     }
 
     // returns a random child according to the selection logic
-    private Tetris topFiveCustomSelection() {
+    private Individual topFiveCustomSelection(RandomGenerator random) {
         double randomChance = 0.05d;
-        if (Math.random() < randomChance) {
-            int randomIndex = (int) (Math.random() * population.length);
+        if (random.nextDouble() < randomChance) {
+            int randomIndex = (int) (random.nextDouble() * population.length);
             return population[randomIndex];
         } else {
-            // TODO: Currently returns a random selection of the top 5 tetris
-            var keyList = topTetris.keySet().stream().sorted().collect(Collectors.toList()).reversed();
-            int key = ThreadLocalRandom.current().nextInt(0, 4);
-            return topTetris.get(keyList.get(key)).clone();
+            // TODO: Currently returns a random selection of the top k tetris
+            int[] ranked = leaderboard.ranked();
+            return population[ranked[random.nextInt(0, ranked.length)]].clone();
         }
     }
 
-    private Tetris fitnessSelection() {
-        double rolledValue = ThreadLocalRandom.current().nextDouble(0, totalFitnessScore);
-        double currentValue = 0;
-
-        for (Tetris individual : population) {
-            currentValue += individual.well.fitness();
-            if (rolledValue <= currentValue) {
-                return individual;
-            }
+    /**@return the genomes of the k fittest individuals of the evaluated generation, best first*/
+    public double[][] topGenomes(int k) {
+        Individual[] ranked = population.clone();
+        // stable sort, equally fit individuals keep the order of their ids
+        Arrays.sort(ranked, Comparator.comparingDouble((Individual individual) -> individual.fitness).reversed());
+        double[][] genomes = new double[Math.min(k, ranked.length)][];
+        for (int i = 0; i < genomes.length; i++) {
+            NeuralNetwork network = ranked[i].network();
+            genomes[i] = new double[network.genomeLength()];
+            network.copyGenome(genomes[i]);
         }
+        return genomes;
+    }
 
-        // This should never happen
-        return null;
+    /**Replaces the last children of the freshly bred generation with individuals built from the given genomes.
+     * The elites at the front are never replaced.*/
+    public void immigrate(double[][] genomes) {
+        for (int i = 0; i < genomes.length && i < population.length - elitism; i++) {
+            population[population.length - 1 - i].loadGenome(genomes[i]);
+        }
+        // stored migrants were written into the slot that was already committed, flush them along with it
+        if (store != null) {
+            store.commit(slot, generation, seeds.seed(), previousCutoff);
+        }
     }
 
     public void populateNextGeneration() {
-        Tetris[] newPopulation = new Tetris[population.length];
+        selection.prepare(population);
         this.generation++;
-        newPopulation[0] = best_individual;
-        newPopulation[0].generation = this.generation;
-        for (int i = 1; i < population.length; i++) {
-            // crosses over the respective neural networks
-            Tetris parent1 = fitnessSelection();
-            Tetris parent2 = fitnessSelection();
-            Tetris child = parent1.crossover(parent2).clone();
-            child.mutate();
-            newPopulation[i] = child;
-            newPopulation[i].id = population[i].id + population.length;
-            newPopulation[i].generation = this.generation;
-        }
-        this.population = newPopulation;
+        // children are bred into the other arena or slot, their parents stay readable until the generation is done
+        int next = 1 - slot;
+        // the best individuals are carried over unchanged, best first
+        int[] elites = leaderboard.ranked();
+        int eliteCount = Math.min(elitism, elites.length);
+        for (int i = 0; i < eliteCount; i++) {
+            Individual elite = population[elites[i]];
+            if (store != null) {
+                elite.storeIn(store, next, i);
+                offspring[i] = elite;
+            } else {
+                elite.neuralNetwork.copyGenome(offspring[i].neuralNetwork);
+                offspring[i].id = elite.id;
+                offspring[i].fitness = elite.fitness;
+                offspring[i].firstParent = elite.firstParent;
+                offspring[i].secondParent = elite.secondParent;
+            }
+            offspring[i].generation = this.generation;
+        }
+        for (int i = eliteCount; i < population.length; i++) {
+            // every child draws its parents, crossover point and mutations from its own stream
+            RandomGenerator random = seeds.stream(generation, Seeds.BREEDING, i);
+            // crosses over the respective neural networks, heap children in place in their arena
+            Individual parent1 = selection.draw(random);
+            Individual parent2 = selection.draw(random);
+            Individual child = store != null
+                    ? parent1.crossover(parent2, random)
+                    : parent1.crossover(parent2, offspring[i], random);
+            child.mutate(random);
+            child.id = population[i].id + population.length;
+            child.firstParent = parent1.id;
+            child.secondParent = parent2.id;
+            child.generation = this.generation;
+            if (store != null) {
+                child.storeIn(store, next, i);
+            }
+            offspring[i] = child;
+        }
+        Individual[] parents = population;
+        population = offspring;
+        offspring = parents;
+        slot = next;
+        if (store != null) {
+            store.commit(slot, generation, seeds.seed(), previousCutoff);
+        }
         this.best_fitness_score = 0;
-        this.fitnessScores.clear();
     }
 }
@@ -0,0 +1,197 @@
+package org.tetris.simple.Tetris;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.*;
+import static org.tetris.simple.Utils.TetrisColors.COLOR_2;
+
+/**Recording of a single game: every piece the game locked, together with where and how it was locked.
+ * Each placement is packed into two bytes, so the piece sequence is part of the replay and nothing has to be
+ * re-generated or re-simulated to watch it. Frames are rebuilt on the fast path of the {@link Well}, the board
+ * after k pieces is just k calls to lockPiece.
+ * <p>
+ * File layout (big endian): magic, version, generation and id of the individual, score, lines cleared, lifetime,
+ * cause of death and the piece that was falling at the end, the number of placements and the placements,
+ * followed by a CRC32 of everything before it.*/
+public class Replay {
+    private static final int magic = 0x47545250; // "GTRP"
+    private static final int version = 1;
+    private static final int headerBytes = 4 + 4 + 4 + 4 + 8 + 8 + 4 + 4 + 4 + 4;
+
+    // INFO: a placement holds x + 1 (bits 0-3, pieces with an empty left column can sit at x = -1),
+    //  the rotation (bits 4-5), the row it was locked at (bits 6-10) and the piece (bits 11-13)
+    private static final int xBits = 4, rotationBits = 2, yBits = 5;
+
+    public final int generation, id;
+    private short[] placements;
+    private int length;
+
+    // outcome of the game, set once it is over
+    private long score, linesCleared;
+    private int lifeTime;
+    private Death death;
+    private int finalPiece;
+
+    public Replay(int generation, int id) {
+        this(generation, id, new short[256], 0);
+    }
+
+    private Replay(int generation, int id, short[] placements, int length) {
+        this.generation = generation;
+        this.id = id;
+        this.placements = placements;
+        this.length = length;
+    }
+
+    // called by the well for every piece it locks
+    void record(int piece, int x, int y, int rotation) {
+        if (length == placements.length) {
+            placements = Arrays.copyOf(placements, length * 2);
+        }
+        placements[length++] = (short) ((x + 1) | rotation << xBits | y << (xBits + rotationBits)
+                | piece << (xBits + rotationBits + yBits));
+    }
+
+    // called by the game once it is over
+    void finish(Well well, Death death) {
+        this.score = well.score;
+        this.linesCleared = well.linesCleared;
+        this.lifeTime = well.lifeTime;
+        this.death = death;
+        this.finalPiece = well.currentPiece;
+    }
+
+    /**@return the number of placements, the last frame of the replay*/
+    public int length() {
+        return length;
+    }
+
+    public long score() {
+        return score;
+    }
+
+    public long linesCleared() {
+        return linesCleared;
+    }
+
+    public int lifeTime() {
+        return lifeTime;
+    }
+
+    public Death death() {
+        return death;
+    }
+
+    public int piece(int index) {
+        return placements[index] >>> (xBits + rotationBits + yBits) & 7;
+    }
+
+    /**Creates the board of a frame, the well after the given number of placements, colors included.*/
+    public Well frame(int frame) {
+        Well well = new Well(10, 20, COLOR_2.color);
+        for (int i = 0; i < frame; i++) {
+            apply(well, i);
+        }
+        showNext(well, frame);
+        return well;
+    }
+
+    /**Locks placement index onto a well that shows frame index, which turns it into frame index + 1.*/
+    public void apply(Well well, int index) {
+        int placement = placements[index];
+        int x = (placement & (1 << xBits) - 1) - 1;
+        int rotation = placement >>> xBits & (1 << rotationBits) - 1;
+        int y = placement >>> (xBits + rotationBits) & (1 << yBits) - 1;
+        well.currentPiece = piece(index);
+        well.lockPiece(x, y, rotation);
+        showNext(well, index + 1);
+    }
+
+    // puts the piece that is placed next (or the one falling at the end) into the spawn position
+    private void showNext(Well well, int frame) {
+        well.currentPiece = frame < length ? piece(frame) : finalPiece;
+        well.rotation = 0;
+        if (well.pieceOrigin == null) {
+            well.pieceOrigin = new Point(4, 2);
+        } else {
+            well.pieceOrigin.setLocation(4, 2);
+        }
+        boolean last = frame == length;
+        // the game's lifetime and end are only known for the last frame
+        well.lifeTime = last ? lifeTime : 0;
+        well.gameOver = last && death == Death.NATURAL;
+    }
+
+    /**Writes the replay under a temporary name and renames it, so a crash never leaves half a replay.*/
+    public void write(Path file) {
+        ByteBuffer buffer = ByteBuffer.allocate(headerBytes + length * 2 + 8);
+        buffer.putInt(magic).putInt(version).putInt(generation).putInt(id)
+                .putLong(score).putLong(linesCleared).putInt(lifeTime).putInt(death.ordinal()).putInt(finalPiece)
+                .putInt(length);
+        buffer.asShortBuffer().put(placements, 0, length);
+        buffer.position(buffer.position() + length * 2);
+        buffer.putLong(checksum(buffer.array(), buffer.position()));
+        buffer.flip();
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (FileChannel channel = FileChannel.open(temporary, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static Replay read(Path file) {
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (buffer.remaining() < headerBytes + 8 || buffer.getInt() != magic) {
+            throw new IllegalStateException(file + " is not a replay");
+        }
+        int fileVersion = buffer.getInt();
+        if (fileVersion != version) {
+            throw new IllegalStateException(file + " has unsupported replay version " + fileVersion);
+        }
+        if (buffer.getLong(buffer.limit() - 8) != checksum(buffer.array(), buffer.limit() - 8)) {
+            throw new IllegalStateException(file + " is corrupted, checksum mismatch");
+        }
+        int generation = buffer.getInt(), id = buffer.getInt();
+        long score = buffer.getLong(), linesCleared = buffer.getLong();
+        int lifeTime = buffer.getInt();
+        Death death = Death.values()[buffer.getInt()];
+        int finalPiece = buffer.getInt();
+        short[] placements = new short[buffer.getInt()];
+        buffer.asShortBuffer().get(placements);
+
+        Replay replay = new Replay(generation, id, placements, placements.length);
+        replay.score = score;
+        replay.linesCleared = linesCleared;
+        replay.lifeTime = lifeTime;
+        replay.death = death;
+        replay.finalPiece = finalPiece;
+        return replay;
+    }
+
+    private static long checksum(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return crc.getValue();
+    }
+}
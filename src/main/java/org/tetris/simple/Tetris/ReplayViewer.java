@@ -0,0 +1,94 @@
+package org.tetris.simple.Tetris;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.swing.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.nio.file.Path;
+
+/**Plays a saved {@link Replay} in a window, one piece per step. Space pauses, the arrow keys step back and forth
+ * and Home starts over. Stepping forward locks a single piece, stepping back rebuilds the frame from the start.
+ * Usage: ReplayViewer file [milliseconds per piece]*/
+@Slf4j
+public class ReplayViewer {
+    private final Replay replay;
+    private final Tetris view = new Tetris(600, 700);
+    private final JFrame frame = new JFrame("TetrisAI Replay");
+    private final Timer timer;
+    private Well well;
+    private int current;
+
+    public ReplayViewer(Replay replay, int delay) {
+        this.replay = replay;
+        this.timer = new Timer(delay, event -> {
+            if (current < replay.length()) {
+                step();
+            } else {
+                ((Timer) event.getSource()).stop();
+            }
+        });
+        show(0);
+
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setSize(600, 700);
+        frame.add(view);
+        frame.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent event) {
+                switch (event.getKeyCode()) {
+                    case KeyEvent.VK_SPACE -> {
+                        if (timer.isRunning()) {
+                            timer.stop();
+                        } else {
+                            timer.start();
+                        }
+                    }
+                    case KeyEvent.VK_RIGHT -> {
+                        if (current < replay.length()) {
+                            step();
+                        }
+                    }
+                    case KeyEvent.VK_LEFT -> show(Math.max(0, current - 1));
+                    case KeyEvent.VK_HOME -> show(0);
+                    default -> {
+                    }
+                }
+            }
+        });
+    }
+
+    public void start() {
+        frame.setVisible(true);
+        timer.start();
+    }
+
+    // locks the next piece onto the shown well
+    private void step() {
+        replay.apply(well, current++);
+        publish();
+    }
+
+    private void show(int frameIndex) {
+        well = replay.frame(frameIndex);
+        current = frameIndex;
+        publish();
+    }
+
+    private void publish() {
+        frame.setTitle("TetrisAI Replay - piece " + current + " / " + replay.length());
+        view.publish(well, replay.id, replay.generation, true);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            log.error("Usage: ReplayViewer file [milliseconds per piece]");
+            return;
+        }
+        Replay replay = Replay.read(Path.of(args[0]));
+        int delay = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        log.info("Replaying {} pieces of individual {} (generation {}): {} lines, score {}, {} death",
+                replay.length(), replay.id, replay.generation, replay.linesCleared(), replay.score(), replay.death());
+        SwingUtilities.invokeLater(() -> new ReplayViewer(replay, delay).start());
+    }
+}
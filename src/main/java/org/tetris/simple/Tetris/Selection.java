@@ -0,0 +1,142 @@
+package org.tetris.simple.Tetris;
+
+import org.tetris.simple.Utils.SelectionMethod;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.random.RandomGenerator;
+
+/**Draws parents from an evaluated generation. Whatever table the selection method needs is built once per
+ * generation in prepare, so a draw never scans the population. Buffers are kept between generations.*/
+class Selection {
+    private final SelectionMethod method;
+    private final int tournamentSize;
+
+    private Individual[] population;
+    // ROULETTE: running sums of the fitness values in population order
+    private double[] cumulative = new double[0];
+    // ALIAS: probability of keeping the drawn column and the index it falls back to otherwise
+    private double[] probability = new double[0];
+    private int[] alias = new int[0], small = new int[0], large = new int[0];
+    // RANK: indices of the population ordered from worst to best fitness
+    private Integer[] ranked = new Integer[0], indices = new Integer[0];
+
+    Selection(SelectionMethod method, int tournamentSize) {
+        this.method = method;
+        this.tournamentSize = tournamentSize;
+    }
+
+    /**Builds the table of the selection method for an evaluated population.*/
+    void prepare(Individual[] population) {
+        this.population = population;
+        int n = population.length;
+        switch (method) {
+            case ROULETTE -> {
+                if (cumulative.length != n) {
+                    cumulative = new double[n];
+                }
+                double sum = 0;
+                for (int i = 0; i < n; i++) {
+                    sum += population[i].fitness;
+                    cumulative[i] = sum;
+                }
+            }
+            case ALIAS -> buildAliasTable();
+            case RANK -> {
+                if (ranked.length != n) {
+                    indices = new Integer[n];
+                    for (int i = 0; i < n; i++) {
+                        indices[i] = i;
+                    }
+                    ranked = new Integer[n];
+                }
+                // stable sort, equally fit individuals keep the order of their index
+                System.arraycopy(indices, 0, ranked, 0, n);
+                Arrays.sort(ranked, Comparator.comparingDouble(i -> population[i].fitness));
+            }
+            case TOURNAMENT -> {
+            }
+        }
+    }
+
+    Individual draw(RandomGenerator random) {
+        int n = population.length;
+        return switch (method) {
+            case ROULETTE -> {
+                // first individual whose running sum reaches the rolled value
+                double rolledValue = random.nextDouble(0, cumulative[n - 1]);
+                int low = 0, high = n - 1;
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (cumulative[middle] < rolledValue) {
+                        low = middle + 1;
+                    } else {
+                        high = middle;
+                    }
+                }
+                yield population[low];
+            }
+            case ALIAS -> {
+                int column = random.nextInt(n);
+                yield population[random.nextDouble() < probability[column] ? column : alias[column]];
+            }
+            case TOURNAMENT -> {
+                Individual best = population[random.nextInt(n)];
+                for (int i = 1; i < tournamentSize; i++) {
+                    Individual contestant = population[random.nextInt(n)];
+                    if (contestant.fitness > best.fitness) {
+                        best = contestant;
+                    }
+                }
+                yield best;
+            }
+            case RANK -> {
+                // rank r (1 = worst) has weight r, so the first r ranks hold r(r+1)/2 of the n(n+1)/2 total weight
+                double rolledValue = random.nextDouble(0, n * (n + 1d) / 2);
+                int rank = (int) ((Math.sqrt(8 * rolledValue + 1) - 1) / 2);
+                yield population[ranked[Math.min(rank, n - 1)]];
+            }
+        };
+    }
+
+    /** See source: <a href="https://www.keithschwarz.com/darts-dice-coins/">Vose's alias method</a>*/
+    private void buildAliasTable() {
+        int n = population.length;
+        if (probability.length != n) {
+            probability = new double[n];
+            alias = new int[n];
+            small = new int[n];
+            large = new int[n];
+        }
+        double total = 0;
+        for (Individual individual : population) {
+            total += individual.fitness;
+        }
+        int smallCount = 0, largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            probability[i] = population[i].fitness * n / total;
+            if (probability[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount], more = large[--largeCount];
+            alias[less] = more;
+            probability[more] += probability[less] - 1;
+            if (probability[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // whatever is left over only misses 1 by rounding errors
+        while (largeCount > 0) {
+            probability[large[--largeCount]] = 1;
+        }
+        while (smallCount > 0) {
+            probability[small[--smallCount]] = 1;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.tetris.simple.Tetris;
+
+import org.tetris.simple.Utils.Tuple;
+
+import java.awt.*;
+
+/**Copy of everything the {@link Tetris} view draws of a well: the color of every cell, the falling piece and the
+ * stats. Taken on the thread that plays the game and handed to the Swing thread as a whole, so drawing never reads a
+ * well that is being changed. The arrays are held as they are, {@link #of} fills fresh ones that nobody writes to
+ * afterwards.*/
+record Snapshot(int id, int generation, int width, int height, Color[] cells, Color pieceColor, Point[] piece,
+                int lifeTime, long score, long linesCleared, int holes, int minHeight, int maxHeight,
+                int heightDifference, boolean gameOver) {
+
+    static Snapshot of(Well well, int id, int generation) {
+        Color[] cells = new Color[well.wellWidth * well.wellHeight];
+        for (int j = 0; j < well.wellHeight; j++) {
+            for (int i = 0; i < well.wellWidth; i++) {
+                cells[j * well.wellWidth + i] = well.colorAt(i, j);
+            }
+        }
+        // the falling piece in well coordinates, none before the first piece spawned
+        Point[] piece = new Point[0];
+        if (well.pieceOrigin != null) {
+            Point[] cellsOfPiece = Tetrominos.tetrominos[well.currentPiece][well.rotation];
+            piece = new Point[cellsOfPiece.length];
+            for (int p = 0; p < piece.length; p++) {
+                piece[p] = new Point(cellsOfPiece[p].x + well.pieceOrigin.x, cellsOfPiece[p].y + well.pieceOrigin.y);
+            }
+        }
+        Tuple<Integer, Integer> heights = well.getHeights();
+        return new Snapshot(id, generation, well.wellWidth, well.wellHeight, cells,
+                well.tetrominoColors[well.currentPiece], piece, well.lifeTime, well.score, well.linesCleared,
+                well.countHoles(), heights.getX(), heights.getY(), well.getTotalHeightDifferences(), well.gameOver);
+    }
+
+    Color cell(int x, int y) {
+        return cells[y * width + x];
+    }
+}
@@ -61,4 +61,39 @@ public class Tetrominos {
                     { new Point(1, 0), new Point(0, 1), new Point(1, 1), new Point(0, 2) }
             }
     };
+
+    // INFO: bitboard view of the tetrominos above, derived once at class load.
+    //  rowMasks[piece][rotation][dy] holds the occupied columns of row dy, shifted so that the
+    //  leftmost cell of the rotation sits on bit 0 (minX is that leftmost column offset).
+    public static final int[][][] rowMasks = new int[tetrominos.length][4][4];
+    public static final int[][] minX = new int[tetrominos.length][4];
+    public static final int[][] maxX = new int[tetrominos.length][4];
+    public static final int[][] maxY = new int[tetrominos.length][4];
+    //  columnBottoms[piece][rotation][c] is the lowest cell (largest y) of the rotation in its c-th column,
+    //  the bottom profile that decides where a dropped piece lands on top of the column heights.
+    public static final int[][][] columnBottoms = new int[tetrominos.length][4][];
+
+    static {
+        for (int piece = 0; piece < tetrominos.length; piece++) {
+            for (int rotation = 0; rotation < 4; rotation++) {
+                int left = Integer.MAX_VALUE, right = Integer.MIN_VALUE, bottom = Integer.MIN_VALUE;
+                for (Point p : tetrominos[piece][rotation]) {
+                    left = Math.min(left, p.x);
+                    right = Math.max(right, p.x);
+                    bottom = Math.max(bottom, p.y);
+                }
+                for (Point p : tetrominos[piece][rotation]) {
+                    rowMasks[piece][rotation][p.y] |= 1 << (p.x - left);
+                }
+                minX[piece][rotation] = left;
+                maxX[piece][rotation] = right;
+                maxY[piece][rotation] = bottom;
+                columnBottoms[piece][rotation] = new int[right - left + 1];
+                for (Point p : tetrominos[piece][rotation]) {
+                    int column = p.x - left;
+                    columnBottoms[piece][rotation][column] = Math.max(columnBottoms[piece][rotation][column], p.y);
+                }
+            }
+        }
+    }
 }
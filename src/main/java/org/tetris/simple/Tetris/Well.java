@@ -5,8 +5,10 @@ import org.tetris.simple.Utils.Tuple;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Random;
+import java.util.random.RandomGenerator;
 
-import static org.tetris.simple.Tetris.Tetrominos.tetrominos;
+import static org.tetris.simple.Tetris.Tetrominos.*;
 import static org.tetris.simple.Utils.TetrisColors.*;
 
 public class Well {
@@ -22,9 +24,20 @@ public class Well {
     };
 
     // Well variables
-    protected Color[][] well;
+    // INFO: one bitmask per row, bit i is set when column i of that row is occupied
+    protected int[] rows;
+    // render-only color layer, copies used by the move search don't carry one (null)
+    protected Color[][] colors;
+    // column heights and number of occupied cells, kept up to date whenever the board changes
+    protected final int[] heights;
+    protected int filledCells;
+    // Zobrist hash of the occupied cells, see Zobrist
+    protected long hash;
+    // number of times this well was overwritten by copyFrom, scratch wells of the move search count their reuse
+    protected long copies;
     protected final int wellHeight;
     protected final int wellWidth;
+    protected final int fullRow;
     protected final Color cellBackground;
 
     // Piece variables
@@ -32,6 +45,13 @@ public class Well {
     protected int currentPiece;
     protected int rotation;
     protected final ArrayList<Integer> nextPieces = new ArrayList<>();
+    // shuffles each bag of pieces, a seeded generator replays the same piece sequence
+    protected RandomGenerator pieceRandom = new Random();
+    // pre-generated pieces to play instead of shuffling bags, null to shuffle, and the next piece to take from it
+    protected PieceSequence sequence;
+    protected int sequenceIndex;
+    // records every piece this well locks, null unless the game is recorded
+    protected Replay replay;
 
     // Game-state variables
     protected long score, linesCleared;
@@ -41,21 +61,29 @@ public class Well {
     protected boolean newPiece = false;
 
     public Well(int wellWidth, int wellHeight, Color cellBackground) {
-        this.well = new Color[wellWidth][wellHeight];
+        this.rows = new int[wellHeight];
+        this.colors = new Color[wellWidth][wellHeight];
+        this.heights = new int[wellWidth];
         this.cellBackground = cellBackground;
         this.wellHeight = wellHeight;
         this.wellWidth = wellWidth;
-        // create an empty well
-        for (int i = 0; i < wellWidth; i++) {
-            for (int j = 0; j < wellHeight; j++) {
-                well[i][j] = cellBackground;
-                // testing with an almost filled line at the bottom
-                // if (j >= wellHeight - 4 && i != 0) {
-                //     well[i][j] = Color.gray;
-                // }
-            }
-        }
+        this.fullRow = (1 << wellWidth) - 1;
+        // testing with an almost filled line at the bottom
+        // for (int j = wellHeight - 4; j < wellHeight; j++) {
+        //     rows[j] = fullRow & ~1;
+        // }
+    }
 
+    // Copies only the occupancy of a well, the color layer is left out
+    private Well(Well source) {
+        this.rows = source.rows.clone();
+        this.heights = source.heights.clone();
+        this.filledCells = source.filledCells;
+        this.hash = source.hash;
+        this.cellBackground = source.cellBackground;
+        this.wellHeight = source.wellHeight;
+        this.wellWidth = source.wellWidth;
+        this.fullRow = source.fullRow;
     }
 
     public double fitness() {
@@ -64,42 +92,66 @@ public class Well {
 
     // copy existing well and its score
     public Well copy() {
-        Well copy = new Well(wellWidth, wellHeight, cellBackground);
-        for (int i = 0; i < wellWidth; i++) {
-            if (wellHeight >= 0) System.arraycopy(well[i], 0, copy.well[i], 0, wellHeight);
-        }
+        Well copy = new Well(this);
         copy.score = this.score;
         copy.linesCleared = this.linesCleared;
         return copy;
     }
 
+    // Overwrites this well with the occupancy, score and current piece of another one, no allocation involved
+    public void copyFrom(Well source) {
+        System.arraycopy(source.rows, 0, rows, 0, wellHeight);
+        System.arraycopy(source.heights, 0, heights, 0, wellWidth);
+        filledCells = source.filledCells;
+        hash = source.hash;
+        score = source.score;
+        linesCleared = source.linesCleared;
+        currentPiece = source.currentPiece;
+        copies++;
+    }
+
     // Collision test for the dropping piece
     protected boolean doesntCollideAt(int x, int y, int rotation) {
-        for (Point p : tetrominos[currentPiece][rotation]) {
-            // 1st check well collision
-            if (p.x + x < 0 || p.x + x >= wellWidth || p.y + y >= wellHeight) {
-                return false;
-            }
-            // 2nd check tetromino collision
-            if (well[p.x + x][p.y + y] != cellBackground) {
+        // 1st check well collision
+        int left = x + minX[currentPiece][rotation];
+        int bottom = maxY[currentPiece][rotation];
+        if (left < 0 || x + maxX[currentPiece][rotation] >= wellWidth || y + bottom >= wellHeight) {
+            return false;
+        }
+        // 2nd check tetromino collision, one mask test per row of the piece
+        int[] masks = rowMasks[currentPiece][rotation];
+        for (int dy = 0; dy <= bottom; dy++) {
+            if ((rows[y + dy] & (masks[dy] << left)) != 0) {
                 return false;
             }
         }
         return true;
     }
 
+    // Color of a single cell, only needed for rendering
+    public Color colorAt(int x, int y) {
+        if ((rows[y] & (1 << x)) == 0) {
+            return cellBackground;
+        }
+        return colors != null ? colors[x][y] : Color.GRAY;
+    }
+
     // Put a new, random piece into the dropping position
     public void newPiece() {
         pieceOrigin = new Point(4, 2);
 
         rotation = 0;
-        if (nextPieces.isEmpty()) {
-            Collections.addAll(nextPieces, 0, 1, 2, 3, 4, 5, 6);
-            // Collections.addAll(nextPieces, 0, 1, 0, 1, 0, 1);
-            // Collections.addAll(nextPieces, 3, 4);
-            Collections.shuffle(nextPieces);
+        if (sequence != null) {
+            currentPiece = sequence.piece(sequenceIndex);
+        } else {
+            if (nextPieces.isEmpty()) {
+                Collections.addAll(nextPieces, 0, 1, 2, 3, 4, 5, 6);
+                // Collections.addAll(nextPieces, 0, 1, 0, 1, 0, 1);
+                // Collections.addAll(nextPieces, 3, 4);
+                Collections.shuffle(nextPieces, pieceRandom);
+            }
+            currentPiece = nextPieces.getFirst();
         }
-        currentPiece = nextPieces.getFirst();
         // currentPiece = 1;
 
         if (!doesntCollideAt(pieceOrigin.x, pieceOrigin.y + 1, rotation)) {
@@ -108,7 +160,20 @@ public class Well {
         }
         this.newPiece = true;
 
-        nextPieces.removeFirst();
+        if (sequence != null) {
+            sequenceIndex++;
+        } else {
+            nextPieces.removeFirst();
+        }
+    }
+
+    /**@return the k-th piece after the current one (0 = the next piece), -1 if it isn't known yet because it
+     * belongs to a bag that hasn't been shuffled*/
+    public int peek(int k) {
+        if (sequence != null) {
+            return sequence.piece(sequenceIndex + k);
+        }
+        return k < nextPieces.size() ? nextPieces.get(k) : -1;
     }
 
     public void setNewPiece(int x, int rotation) {
@@ -129,6 +194,31 @@ public class Well {
         }
     }
 
+    // Rows the current piece can still fall before it collides
+    public int dropDistance() {
+        return landingRow(pieceOrigin.x, pieceOrigin.y, rotation) - pieceOrigin.y;
+    }
+
+    /**Row the current piece comes to rest at when it falls straight down from (x, y). As long as the piece
+     * starts above the stack in every column it covers, the column heights and the bottom profile of the piece
+     * give the answer in O(piece width). Otherwise (the piece sits below an overhang) it is probed row by row.*/
+    public int landingRow(int x, int y, int rotation) {
+        int left = x + minX[currentPiece][rotation];
+        int[] bottoms = columnBottoms[currentPiece][rotation];
+        int landing = Integer.MAX_VALUE;
+        for (int c = 0; c < bottoms.length; c++) {
+            // the piece's lowest cell in this column has to stay above the topmost occupied cell (or the floor)
+            landing = Math.min(landing, wellHeight - heights[left + c] - 1 - bottoms[c]);
+        }
+        if (landing >= y) {
+            return landing;
+        }
+        while (doesntCollideAt(x, y + 1, rotation)) {
+            y++;
+        }
+        return y;
+    }
+
     // Rotate the piece clockwise or counterclockwise
     public void rotate(int i) {
         int newRotation = (rotation + i) % 4;
@@ -150,17 +240,38 @@ public class Well {
     // Make the dropping piece part of the well, so it is available for
     // collision detection.
     public void fixToWell() {
+        if (replay != null) {
+            replay.record(currentPiece, pieceOrigin.x, pieceOrigin.y, rotation);
+        }
+        lockPiece(pieceOrigin.x, pieceOrigin.y, rotation);
+        newPiece();
+    }
+
+    // Sets the current piece at the given position and clears completed rows, without spawning a new piece
+    public void lockPiece(int x, int y, int rotation) {
+        int left = x + minX[currentPiece][rotation];
+        int[] masks = rowMasks[currentPiece][rotation];
+        for (int dy = 0; dy <= maxY[currentPiece][rotation]; dy++) {
+            int row = rows[y + dy];
+            rows[y + dy] = row | masks[dy] << left;
+            hash ^= Zobrist.rowKey(y + dy, row) ^ Zobrist.rowKey(y + dy, rows[y + dy]);
+        }
         for (Point p : tetrominos[currentPiece][rotation]) {
-            well[pieceOrigin.x + p.x][pieceOrigin.y + p.y] = tetrominoColors[currentPiece];
+            heights[x + p.x] = Math.max(heights[x + p.x], wellHeight - (y + p.y));
+            if (colors != null) {
+                colors[x + p.x][y + p.y] = tetrominoColors[currentPiece];
+            }
         }
+        filledCells += tetrominos[currentPiece][rotation].length;
         clearRows();
-        newPiece();
     }
 
+    // Shifts every row above the given one down by one, the top rows are never occupied
     public void deleteRow(int row) {
-        for (int j = row-1; j > 0; j--) {
-            for (int i = 0; i < 10; i++) {
-                well[i][j+1] = well[i][j];
+        System.arraycopy(rows, 1, rows, 2, row - 1);
+        if (colors != null) {
+            for (Color[] column : colors) {
+                System.arraycopy(column, 1, column, 2, row - 1);
             }
         }
     }
@@ -168,18 +279,10 @@ public class Well {
     // Clear completed rows from the field and award score according to
     // the number of simultaneously cleared rows.
     public void clearRows() {
-        boolean gap;
         int numClears = 0;
 
-        for (int j = 19; j > 0; j--) {
-            gap = false;
-            for (int i = 0; i < 10; i++) {
-                if (well[i][j] == cellBackground) {
-                    gap = true;
-                    break;
-                }
-            }
-            if (!gap) {
+        for (int j = wellHeight - 1; j > 0; j--) {
+            if (rows[j] == fullRow) {
                 deleteRow(j);
                 j += 1;
                 numClears += 1;
@@ -202,52 +305,56 @@ public class Well {
         }
 
         linesCleared += numClears;
+        // INFO: clears are rare compared to drops, so heights and hash are only rebuilt from scratch here
+        if (numClears > 0) {
+            updateHeights();
+        }
     }
 
-    private int getColumnHeight(Color[] column) {
-        int cur = 20;
-        for (Color color : column) {
-            if (color == cellBackground) {
-                cur--;
-            } else {
-                break;
+    private int getColumnHeight(int column) {
+        int mask = 1 << column;
+        for (int j = 0; j < wellHeight; j++) {
+            if ((rows[j] & mask) != 0) {
+                return wellHeight - j;
             }
         }
-        return cur;
+        return 0;
+    }
+
+    private void updateHeights() {
+        filledCells = 0;
+        hash = 0;
+        for (int j = 0; j < wellHeight; j++) {
+            filledCells += Integer.bitCount(rows[j]);
+            hash ^= Zobrist.rowKey(j, rows[j]);
+        }
+        for (int i = 0; i < wellWidth; i++) {
+            heights[i] = getColumnHeight(i);
+        }
     }
 
+    // every empty cell below the top of its column is a hole
     protected int countHoles() {
-        int holes = 0;
-        for (Color[] column : well) {
-            boolean cellFound = false;
-            for (Color color : column) {
-                if (color != cellBackground && !cellFound) {
-                    cellFound = true;
-                } else if (color == cellBackground && cellFound) {
-                    holes++;
-                }
-            }
+        int holes = -filledCells;
+        for (int height : heights) {
+            holes += height;
         }
         return holes;
     }
 
     protected Tuple<Integer, Integer> getHeights() {
-        ArrayList<Integer> cols = new ArrayList<>();
-        for (Color[] column : well) {
-            cols.add(getColumnHeight(column));
+        int min = heights[0], max = heights[0];
+        for (int height : heights) {
+            min = Math.min(min, height);
+            max = Math.max(max, height);
         }
-        return new Tuple<>(Collections.min(cols), Collections.max(cols));
+        return new Tuple<>(min, max);
     }
 
     protected int getTotalHeightDifferences() {
-        int curHeight, lastHeight = -1;
         int totalHeightDifference = 0;
-        for (Color[] column : well) {
-            curHeight = getColumnHeight(column);
-            if (lastHeight != -1) {
-                totalHeightDifference += Math.abs(lastHeight - curHeight);
-            }
-            lastHeight = curHeight;
+        for (int i = 1; i < wellWidth; i++) {
+            totalHeightDifference += Math.abs(heights[i - 1] - heights[i]);
         }
         return totalHeightDifference;
     }
@@ -259,7 +366,7 @@ public class Well {
         for (int i = 0; i < wellHeight; i++) {
             sb.append("\t");
             for (int j = 0; j < wellWidth; j++) {
-                if (well[j][i] == cellBackground) {
+                if ((rows[i] & (1 << j)) == 0) {
                     sb.append("0 ");
                 } else {
                     sb.append("1 ");
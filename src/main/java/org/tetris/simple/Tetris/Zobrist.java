@@ -0,0 +1,49 @@
+package org.tetris.simple.Tetris;
+
+import java.util.SplittableRandom;
+
+import static org.tetris.simple.Utils.Config.lookaheadDepth;
+
+/**Zobrist-style keys of a board. Every row is split into chunks of five columns and each (row, chunk, pattern)
+ * gets a random 64-bit key, the hash of a board is the XOR of the keys of all its rows. Empty patterns have the
+ * key 0, so an empty board hashes to 0 and a drop only needs to swap the keys of the rows it touched.*/
+public final class Zobrist {
+    private static final int chunkBits = 5;
+    private static final int maxRows = 64;
+    private static final int chunks = (Integer.SIZE + chunkBits - 1) / chunkBits;
+
+    // fixed seed, the keys have to be the same in every run and every process
+    private static final long[][][] rowKeys = new long[maxRows][chunks][1 << chunkBits];
+    // room for the lines a lookahead over several pieces can clear, at most four per piece
+    private static final long[] linesKeys = new long[4 * Math.max(1, lookaheadDepth) + 1];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5eed2b0a7dL);
+        for (long[][] row : rowKeys) {
+            for (long[] chunk : row) {
+                for (int pattern = 1; pattern < chunk.length; pattern++) {
+                    chunk[pattern] = random.nextLong();
+                }
+            }
+        }
+        for (int lines = 0; lines < linesKeys.length; lines++) {
+            linesKeys[lines] = random.nextLong();
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    public static long rowKey(int row, int mask) {
+        long key = 0;
+        for (int chunk = 0; mask != 0; chunk++, mask >>>= chunkBits) {
+            key ^= rowKeys[row][chunk][mask & ((1 << chunkBits) - 1)];
+        }
+        return key;
+    }
+
+    // key of the number of lines cleared since the searched position (0 - 4 per placed piece)
+    public static long linesKey(int lines) {
+        return linesKeys[lines];
+    }
+}
@@ -2,15 +2,61 @@ package org.tetris.simple.Utils;
 
 public class Config {
     // Game configuration variables
-    public static final boolean reasonableSpeed = false;  // Use the gameSpeed globally
-    public static final boolean spectatorMode = false;    // Use the gameSpeed only when an individual has reached a certain lifetime threshold
+    public static final boolean headless = false;         // Train without a frame, no game is rendered
+    public static final boolean placementMode = true;     // Unwatched games hard-drop each chosen placement instead of simulating every tick
+    public static final boolean reasonableSpeed = false;  // Slow the shown game down to gameSpeed per tick, the only setting that slows a simulation down
+    public static final boolean spectatorMode = false;    // Only show games once they have reached the spectatorLimit, they run at full speed either way
+    public static final int renderFps = 30;               // Frames per second a watched run is drawn at, games publish no more snapshots than that
 
     public static final int gameSpeed = 10;               // Speed of the game (timeout in ms)
     public static final int timeOut = 1000000;            // Lifetime limit of an instance, after which it gets killed
-    public static final int spectatorLimit = 30000;       // Lifetime threshold after which an individual can use the gameSpeed
+    public static final int spectatorLimit = 30000;       // Lifetime threshold after which a game is shown in spectator mode
+    public static final int evaluationCacheSize = 4096;   // Slots of the per-game cache of network scores, 0 = disabled
+    public static final int lookaheadDepth = 1;           // Pieces the move search places, 1 = only the current one, more use the known upcoming pieces
+    public static final int beamWidth = 4;                // Best placements of a ply that are searched one piece deeper
+    public static final boolean parallelLookahead = true; // Search the beam of a game in parallel when it runs in the worker pool
 
     // Genetic Algorithm parameters
     public static final int populationSize = 200;
     public static final int generationCount = 20;
     public static final double mutationRate = 0.05d;
+    public static final SelectionMethod selection = SelectionMethod.ROULETTE; // How parents are drawn, see SelectionMethod
+    public static final int tournamentSize = 3;           // Contestants of a tournament selection draw
+    public static final int gamesPerIndividual = 1;       // Games every individual plays per generation, all individuals play the same piece sequences
+    public static final int pieceSequenceLength = 100000; // Pieces drawn up front per shared sequence, longer games draw more bags as they need them
+    public static final boolean rejectWorseIndividuals = false; // Stop evaluating individuals whose 95% confidence interval lies below the leader's
+    public static final int minGamesBeforeRejection = 5;  // Games every individual plays before the first rejection, fewer give no useful interval
+    public static final int gamesPerRound = 2;            // Games every remaining individual plays in parallel between two rejections
+    public static final int topK = 5;                     // Size of the leaderboard of each generation
+    public static final int elitism = 1;                  // Best individuals that are carried over into the next generation unchanged
+    public static final int workerThreads = 0;            // Threads that play games in parallel, 0 = all cores
+    public static final long seed = 0L;                   // Seed of the whole run, 0 = draw a fresh one (it gets logged)
+    public static final String genomeStore = "";          // Memory-mapped file that holds all genomes instead of the heap and is reopened on restart, empty = heap
+
+    // Early stopping of games, every policy has its own death counter
+    public static final int pieceBudget = 0;              // Pieces a game may place in the first generation, 0 = unlimited
+    public static final int pieceBudgetGrowth = 0;        // Pieces the budget grows by with every generation
+    public static final boolean stopHopelessGames = false; // Stop games that can't reach the top-K fitness of the previous generation anymore, the bound is loose and rarely fires
+    public static final int generationTimeBudget = 0;     // Wall-clock time the games of one generation may take (ms), 0 = unlimited
+
+    // Checkpoints
+    public static final int checkpointInterval = 0;       // Generations between two checkpoints, 0 = never write any
+    public static final int checkpointsKept = 2;          // Older checkpoints are deleted
+    public static final String checkpointDirectory = "checkpoints";
+    public static final boolean resumeFromCheckpoint = false; // Continue from the newest checkpoint in the directory, if there is one
+
+    // Metrics, every generation is logged in short in any case
+    public static final String metricsFile = "";          // JSON-lines file every generation appends its metrics to, empty = none
+    public static final int metricsPort = 0;              // Local port that serves the metrics of the latest generation at /metrics, 0 = no server
+
+    // History
+    public static final String generationLog = "";        // Append-only file with the id, parents and results of every individual of every generation, empty = none
+
+    // Replays
+    public static final String replayDirectory = "";      // Directory the best game of every generation is saved to as a replay, empty = games aren't recorded
+
+    // Island model parameters (only used when running with --island)
+    public static final int migrationInterval = 5;        // Generations between two migrations
+    public static final int migrationSize = 5;            // Best individuals each island sends to its neighbour
+    public static final int migrationTimeout = 600000;    // Time an island waits for its neighbour's migrants (ms)
 }
@@ -0,0 +1,39 @@
+package org.tetris.simple.Utils;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**Derives independent, reproducible random streams from the seed of a run. A stream is identified by the
+ * generation, what it is used for and the index of the individual, so the numbers an individual sees don't
+ * depend on the thread that plays it or on the order in which games finish.*/
+public final class Seeds {
+    // what a stream is used for
+    public static final int PIECES = 1;
+    public static final int WEIGHTS = 2;
+    public static final int BREEDING = 3;
+
+    private final long seed;
+
+    public Seeds(long seed) {
+        this.seed = seed;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public RandomGenerator stream(int generation, int purpose, int index) {
+        long key = mix(seed + generation);
+        key = mix(key + purpose);
+        key = mix(key + index);
+        return new SplittableRandom(key);
+    }
+
+    /** See source: <a href="https://prng.di.unimi.it/splitmix64.c">SplitMix64</a> finalizer*/
+    private static long mix(long z) {
+        z += 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
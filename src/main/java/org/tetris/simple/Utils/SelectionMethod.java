@@ -0,0 +1,9 @@
+package org.tetris.simple.Utils;
+
+/**How the parents of the next generation are drawn from an evaluated one.*/
+public enum SelectionMethod {
+    ROULETTE,   // fitness-proportionate, binary search over the prefix sums of the fitness values, O(log N) per draw
+    ALIAS,      // fitness-proportionate, Walker's alias table, O(1) per draw
+    TOURNAMENT, // fittest of tournamentSize uniformly drawn individuals, O(tournamentSize) per draw
+    RANK,       // linear ranking, the i-th worst individual is drawn with weight i, O(1) per draw
+}
@@ -0,0 +1,97 @@
+package org.tetris.simple.Utils;
+
+/**Keeps the k best (score, index) pairs offered to it in a primitive min-heap, the worst kept entry sits at the
+ * root. Equal scores are ranked by index, the lower index wins, so the result doesn't depend on the order in
+ * which entries are offered. All methods are synchronized, parallel evaluators can offer concurrently.*/
+public class TopK {
+    private final double[] scores;
+    private final int[] indices;
+    private int size;
+
+    public TopK(int k) {
+        scores = new double[k];
+        indices = new int[k];
+    }
+
+    public synchronized void clear() {
+        size = 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void offer(double score, int index) {
+        if (size < scores.length) {
+            // append and sift up
+            int child = size++;
+            while (child > 0) {
+                int parent = (child - 1) >>> 1;
+                if (!worse(score, index, scores[parent], indices[parent])) {
+                    break;
+                }
+                scores[child] = scores[parent];
+                indices[child] = indices[parent];
+                child = parent;
+            }
+            scores[child] = score;
+            indices[child] = index;
+        } else if (size > 0 && worse(scores[0], indices[0], score, index)) {
+            // replace the root and sift down
+            int parent = 0;
+            while (true) {
+                int child = 2 * parent + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && worse(scores[child + 1], indices[child + 1], scores[child], indices[child])) {
+                    child++;
+                }
+                if (!worse(scores[child], indices[child], score, index)) {
+                    break;
+                }
+                scores[parent] = scores[child];
+                indices[parent] = indices[child];
+                parent = child;
+            }
+            scores[parent] = score;
+            indices[parent] = index;
+        }
+    }
+
+    /**@return the score an entry has to beat to be kept once the heap is full, negative infinity before that*/
+    public synchronized double cutoff() {
+        return size == scores.length ? scores[0] : Double.NEGATIVE_INFINITY;
+    }
+
+    /**@return the best score offered so far, negative infinity if nothing was offered*/
+    public synchronized double best() {
+        double best = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            best = Math.max(best, scores[i]);
+        }
+        return best;
+    }
+
+    /**@return the kept indices, best first*/
+    public synchronized int[] ranked() {
+        int[] ranked = new int[size];
+        double[] rankedScores = new double[size];
+        // insertion sort, k is small
+        for (int i = 0; i < size; i++) {
+            int j = i;
+            while (j > 0 && worse(rankedScores[j - 1], ranked[j - 1], scores[i], indices[i])) {
+                ranked[j] = ranked[j - 1];
+                rankedScores[j] = rankedScores[j - 1];
+                j--;
+            }
+            ranked[j] = indices[i];
+            rankedScores[j] = scores[i];
+        }
+        return ranked;
+    }
+
+    private static boolean worse(double score, int index, double otherScore, int otherIndex) {
+        return score < otherScore || (score == otherScore && index > otherIndex);
+    }
+}
@@ -0,0 +1,112 @@
+package org.tetris.simple.Island;
+
+import lombok.extern.slf4j.Slf4j;
+import org.tetris.simple.Storage.Checkpoint;
+import org.tetris.simple.Tetris.GeneticTetris;
+import org.tetris.simple.Tetris.Population;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.tetris.simple.Utils.Config.migrationInterval;
+
+/**Starts a small island-model run as several local JVM processes that share a temporary directory and checks
+ * that every island finished, published migrants at every migration point and took in the migrants of its
+ * neighbour. Needs no external services. The run ends on a migration point and every island checkpoints its
+ * final population, which has to hold the genomes its neighbour sent last.
+ * Runs as part of the tests (IslandHarnessTest) and on its own with the islandHarness task.
+ * Usage: IslandHarness [islands] [generations] [populationSize]*/
+@Slf4j
+public class IslandHarness {
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // a single island started by the harness: --island <index> <islandCount> <directory> <generations> <populationSize>
+        if (args.length == 6 && args[0].equals("--island")) {
+            System.setProperty("java.awt.headless", "true");
+            Migration migration = new Migration(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Path.of(args[3]));
+            Population population = new GeneticTetris(migration, Integer.parseInt(args[5]), Integer.parseInt(args[4])).runGeneticTetris();
+            population.checkpoint().write(migration.islandFile("final"), 1);
+            return;
+        }
+        int islands = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int generations = args.length > 1 ? Integer.parseInt(args[1]) : 2 * migrationInterval;
+        int populationSize = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        System.exit(run(islands, generations, populationSize, 30) ? 0 : 1);
+    }
+
+    /**@param generations a multiple of the migration interval, so the last generation migrates
+     * @param minutes time the islands get to finish, islands that take longer are killed and fail the run
+     * @return whether every island finished and exchanged its migrants*/
+    public static boolean run(int islands, int generations, int populationSize, int minutes) throws IOException, InterruptedException {
+        if (generations < migrationInterval || generations % migrationInterval != 0) {
+            throw new IllegalArgumentException("The run has to end on a migration point, " + generations
+                    + " generations aren't a multiple of " + migrationInterval);
+        }
+        Path directory = Files.createTempDirectory("genetic-tetris-islands");
+        log.info("Starting {} islands in {}", islands, directory);
+
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> processes = new ArrayList<>();
+        for (int island = 0; island < islands; island++) {
+            ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    IslandHarness.class.getName(), "--island", String.valueOf(island), String.valueOf(islands),
+                    directory.toString(), String.valueOf(generations), String.valueOf(populationSize));
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(directory.resolve("island-" + island + ".log").toFile());
+            processes.add(builder.start());
+        }
+
+        boolean success = true;
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(minutes);
+        for (int island = 0; island < islands; island++) {
+            Process process = processes.get(island);
+            if (!process.waitFor(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                process.destroyForcibly();
+                log.error("Island {} did not finish", island);
+                success = false;
+            } else if (process.exitValue() != 0) {
+                log.error("Island {} exited with {}", island, process.exitValue());
+                success = false;
+            }
+        }
+        if (!success) {
+            log.error("Island run FAILED, logs in {}", directory);
+            return false;
+        }
+
+        for (int island = 0; island < islands; island++) {
+            // every island has to have published its migrants at every migration point
+            for (int generation = migrationInterval; generation <= generations; generation += migrationInterval) {
+                File migrants = directory.resolve("island-" + island).resolve("generation-" + generation + ".bin").toFile();
+                if (!migrants.isFile()) {
+                    log.error("Island {} has no migrants for generation {}", island, generation);
+                    success = false;
+                }
+            }
+            // and the migrants of the last generation have to be part of the final population of the next island
+            Migration migration = new Migration(island, islands, directory);
+            double[][] received = migration.immigrate(generations);
+            Checkpoint checkpoint = Checkpoint.latest(migration.islandFile("final"));
+            if (received.length == 0 || checkpoint == null) {
+                log.error("Island {} has no migrants or no final population to check", island);
+                success = false;
+                continue;
+            }
+            for (int m = 0; m < received.length; m++) {
+                double[] genome = received[m];
+                if (Arrays.stream(checkpoint.genomes).noneMatch(individual -> Arrays.equals(individual, genome))) {
+                    log.error("Migrant {} of generation {} never arrived in the population of island {}", m, generations, island);
+                    success = false;
+                }
+            }
+        }
+
+        log.info(success ? "Island run finished, logs in {}" : "Island run FAILED, logs in {}", directory);
+        return success;
+    }
+}
@@ -0,0 +1,16 @@
+package org.tetris.simple.Island;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.tetris.simple.Utils.Config.migrationInterval;
+
+/**Runs the island harness as part of the build, so a migration that doesn't deliver its genomes into the next
+ * island's population fails it. A healthy run takes seconds, islands that wait for migrants that never come are
+ * killed after a few minutes.*/
+class IslandHarnessTest {
+    @Test
+    void islandsExchangeMigrants() throws Exception {
+        assertTrue(IslandHarness.run(3, migrationInterval, 20, 3), "island run failed, see the log for its directory");
+    }
+}
@@ -0,0 +1,74 @@
+package org.tetris.simple.Storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**A log that was damaged after its last good block is cut back to that block when it is opened again.*/
+class GenerationLogTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void dropsBlockWithNegativeSize() throws IOException {
+        assertTailDropped(ByteBuffer.allocate(16).putInt(3).putInt(-1).putLong(42).array());
+    }
+
+    @Test
+    void dropsBlockLongerThanTheFile() throws IOException {
+        assertTailDropped(ByteBuffer.allocate(16).putInt(3).putInt(1000).putLong(42).array());
+    }
+
+    @Test
+    void dropsBlockWithWrongChecksum() throws IOException {
+        Path longer = directory.resolve("longer.gtl");
+        write(longer, 4);
+        byte[] bytes = Files.readAllBytes(longer);
+        byte[] block = Arrays.copyOfRange(bytes, (int) Files.size(write(directory.resolve("shorter.gtl"), 3)), bytes.length);
+        block[12] ^= 1;
+        assertTailDropped(block);
+    }
+
+    private void assertTailDropped(byte[] tail) throws IOException {
+        Path file = write(directory.resolve("run.gtl"), 3);
+        long size = Files.size(file);
+        Files.write(file, tail, StandardOpenOption.APPEND);
+
+        new GenerationLog(file).close();
+        assertEquals(size, Files.size(file));
+        try (Stream<GenerationRecords> records = GenerationLog.stream(file, 0, Integer.MAX_VALUE)) {
+            List<GenerationRecords> generations = records.toList();
+            assertEquals(3, generations.size());
+            assertArrayEquals(records(2).fitness(), generations.get(2).fitness());
+        }
+    }
+
+    private static Path write(Path file, int generations) {
+        try (GenerationLog log = new GenerationLog(file)) {
+            for (int g = 0; g < generations; g++) {
+                log.append(records(g));
+            }
+        }
+        return file;
+    }
+
+    private static GenerationRecords records(int generation) {
+        GenerationRecords records = new GenerationRecords(generation, 5);
+        for (int i = 0; i < records.size(); i++) {
+            records.ids()[i] = generation * 5 + i;
+            records.fitness()[i] = generation * 100 + i;
+        }
+        return records;
+    }
+}
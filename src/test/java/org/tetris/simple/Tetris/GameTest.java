@@ -0,0 +1,55 @@
+package org.tetris.simple.Tetris;
+
+import org.junit.jupiter.api.Test;
+import org.tetris.simple.Network.NeuralNetwork;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**The shortcuts of the game have to play exactly the game the plain tick loop plays. Every check plays seeded
+ * random networks, limited to a piece budget so long-lived networks don't slow the build down.*/
+class GameTest {
+    private static final int games = 40;
+    private static final EarlyStopping budget = new EarlyStopping(1000, Double.NEGATIVE_INFINITY, Long.MAX_VALUE);
+
+    @Test
+    void placementsPlayTheSameGameAsTicks() {
+        for (int g = 0; g < games; g++) {
+            Game ticks = game(g, 0);
+            ticks.play(false);
+            Game placements = game(g, 0);
+            placements.play(true);
+            assertSameGame(ticks, placements, g);
+        }
+    }
+
+    @Test
+    void cachePlaysTheSameGameAsScoringEveryBoard() {
+        for (int g = 0; g < games; g++) {
+            Game uncached = game(g, 0);
+            uncached.play(true);
+            Game cached = game(g, 4096);
+            cached.play(true);
+            assertSameGame(uncached, cached, g);
+        }
+    }
+
+    // the g-th seeded network on the g-th seeded piece sequence
+    private static Game game(int g, int cacheSize) {
+        NeuralNetwork network = Individual.createNetwork();
+        network.rollInitialWeights(new SplittableRandom(g));
+        Game game = new Game(network, new SplittableRandom(1000 + g), cacheSize);
+        game.limit(budget);
+        return game;
+    }
+
+    private static void assertSameGame(Game expected, Game actual, int g) {
+        assertArrayEquals(expected.well.rows, actual.well.rows, "board of game " + g);
+        assertEquals(expected.well.score, actual.well.score, "score of game " + g);
+        assertEquals(expected.well.linesCleared, actual.well.linesCleared, "lines of game " + g);
+        assertEquals(expected.well.lifeTime, actual.well.lifeTime, "lifetime of game " + g);
+        assertEquals(expected.death, actual.death, "death of game " + g);
+    }
+}
@@ -0,0 +1,39 @@
+package org.tetris.simple.Tetris;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IndividualTest {
+    /**The running mean and variance (Welford) agree with the textbook two-pass computation.*/
+    @Test
+    void runningStatisticsMatchTwoPasses() {
+        SplittableRandom random = new SplittableRandom(5);
+        for (int trial = 0; trial < 100; trial++) {
+            double[] fitness = new double[1 + random.nextInt(30)];
+            Individual individual = new Individual();
+            for (int g = 0; g < fitness.length; g++) {
+                // fitness values of real games: large and close to each other
+                fitness[g] = 1e6 + random.nextDouble(-1000, 1000);
+                individual.record(new GameResult(fitness[g], 0, 0, 0, Death.NATURAL, 0, 0, 0, null));
+            }
+
+            double mean = 0;
+            for (double f : fitness) {
+                mean += f;
+            }
+            mean /= fitness.length;
+            double squares = 0;
+            for (double f : fitness) {
+                squares += (f - mean) * (f - mean);
+            }
+            double variance = fitness.length > 1 ? squares / (fitness.length - 1) : 0;
+
+            assertEquals(fitness.length, individual.games);
+            assertEquals(mean, individual.fitness, 1e-6);
+            assertEquals(variance, individual.fitnessVariance(), variance * 1e-9 + 1e-9);
+        }
+    }
+}
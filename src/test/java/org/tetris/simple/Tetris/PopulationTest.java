@@ -0,0 +1,45 @@
+package org.tetris.simple.Tetris;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tetris.simple.Storage.Checkpoint;
+import org.tetris.simple.Storage.GenerationRecords;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PopulationTest {
+    private static final int size = 20, generations = 4, checkpointAfter = 1;
+
+    /**A run resumed from a checkpoint evaluates exactly the individuals the uninterrupted run evaluates.*/
+    @Test
+    void resumedRunMatchesUninterruptedRun(@TempDir Path checkpoints) {
+        GenerationRecords[] uninterrupted = new GenerationRecords[generations];
+        Population population = new Population(size, 777L);
+        for (int g = 0; g < generations; g++) {
+            population.runCurrentPopulation();
+            uninterrupted[g] = population.records();
+            population.populateNextGeneration();
+            if (g == checkpointAfter) {
+                population.checkpoint().write(checkpoints, 1);
+            }
+        }
+
+        Checkpoint checkpoint = Checkpoint.latest(checkpoints);
+        assertEquals(Arrays.stream(uninterrupted[checkpointAfter].fitness()).max().orElseThrow(), checkpoint.bestFitness,
+                "best fitness of the checkpointed generation");
+        Population resumed = new Population(checkpoint);
+        for (int g = checkpointAfter + 1; g < generations; g++) {
+            resumed.runCurrentPopulation();
+            GenerationRecords records = resumed.records();
+            assertEquals(uninterrupted[g].generation(), records.generation());
+            assertArrayEquals(uninterrupted[g].ids(), records.ids(), "ids of generation " + g);
+            assertArrayEquals(uninterrupted[g].fitness(), records.fitness(), "fitness of generation " + g);
+            assertArrayEquals(uninterrupted[g].linesCleared(), records.linesCleared(), "lines of generation " + g);
+            resumed.populateNextGeneration();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package org.tetris.simple.Tetris;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.tetris.simple.Network.NeuralNetwork;
+
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReplayTest {
+    /**A replay written to disk and read back rebuilds the final board and the results of the game it recorded.*/
+    @Test
+    void roundTripReproducesTheGame(@TempDir Path directory) {
+        for (int g = 0; g < 20; g++) {
+            NeuralNetwork network = Individual.createNetwork();
+            network.rollInitialWeights(new SplittableRandom(g));
+            Game game = new Game(network, new SplittableRandom(1000 + g));
+            game.limit(new EarlyStopping(1000, Double.NEGATIVE_INFINITY, Long.MAX_VALUE));
+            game.record(new Replay(1, g));
+            game.play();
+
+            Path file = directory.resolve("game-" + g + ".replay");
+            game.result().replay().write(file);
+            Replay replay = Replay.read(file);
+            Well end = replay.frame(replay.length());
+            assertArrayEquals(game.well.rows, end.rows, "board of game " + g);
+            assertEquals(game.well.score, end.score, "score of game " + g);
+            assertEquals(game.well.linesCleared, end.linesCleared, "lines of game " + g);
+            assertEquals(game.well.score, replay.score(), "recorded score of game " + g);
+            assertEquals(game.well.linesCleared, replay.linesCleared(), "recorded lines of game " + g);
+            assertEquals(game.well.lifeTime, replay.lifeTime(), "recorded lifetime of game " + g);
+            assertEquals(game.death, replay.death(), "recorded death of game " + g);
+
+            // stepping through the frames ends on the same board as rebuilding the last one
+            Well stepped = replay.frame(0);
+            for (int i = 0; i < replay.length(); i++) {
+                replay.apply(stepped, i);
+            }
+            assertArrayEquals(end.rows, stepped.rows, "stepped board of game " + g);
+        }
+    }
+}
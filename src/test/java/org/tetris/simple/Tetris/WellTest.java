@@ -0,0 +1,50 @@
+package org.tetris.simple.Tetris;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.tetris.simple.Utils.TetrisColors.COLOR_2;
+
+class WellTest {
+    /**Stacks randomly dropped pieces and compares the landing row of every piece, rotation and free start position
+     * with the row found by probing, positions below overhangs included.*/
+    @Test
+    void landingRowMatchesProbing() {
+        SplittableRandom random = new SplittableRandom(11);
+        Well well = new Well(10, 20, COLOR_2.color);
+        for (int drop = 0; drop < 300; drop++) {
+            for (int piece = 0; piece < 7; piece++) {
+                well.currentPiece = piece;
+                for (int rotation = 0; rotation < 4; rotation++) {
+                    for (int x = -2; x < well.wellWidth; x++) {
+                        for (int y = 0; y < well.wellHeight; y++) {
+                            if (well.doesntCollideAt(x, y, rotation)) {
+                                assertEquals(probe(well, x, y, rotation), well.landingRow(x, y, rotation),
+                                        "piece " + piece + " rotation " + rotation + " at " + x + "," + y + " after " + drop + " drops");
+                            }
+                        }
+                    }
+                }
+            }
+            // drops a random piece from the top, a well that is full starts over
+            well.currentPiece = random.nextInt(7);
+            int rotation = random.nextInt(4), x = random.nextInt(-2, well.wellWidth);
+            if (!well.doesntCollideAt(x, 0, rotation)) {
+                if (!well.doesntCollideAt(4, 0, 0)) {
+                    well = new Well(10, 20, COLOR_2.color);
+                }
+                continue;
+            }
+            well.lockPiece(x, probe(well, x, 0, rotation), rotation);
+        }
+    }
+
+    private static int probe(Well well, int x, int y, int rotation) {
+        while (well.doesntCollideAt(x, y + 1, rotation)) {
+            y++;
+        }
+        return y;
+    }
+}
@@ -0,0 +1,44 @@
+package org.tetris.simple.Utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class TopKTest {
+    /**Whatever order the entries are offered in, the kept entries are the first k of a full sort, best score first
+     * and the lower index first among equal scores.*/
+    @Test
+    void rankingMatchesFullSort() {
+        SplittableRandom random = new SplittableRandom(3);
+        for (int trial = 0; trial < 500; trial++) {
+            int n = 1 + random.nextInt(60), k = 1 + random.nextInt(8);
+            double[] scores = new double[n];
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                // few distinct scores, so there are plenty of ties
+                scores[i] = random.nextInt(6);
+                order.add(i);
+            }
+            Collections.shuffle(order, new Random(trial));
+            TopK top = new TopK(k);
+            for (int i : order) {
+                top.offer(scores[i], i);
+            }
+
+            Integer[] sorted = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                sorted[i] = i;
+            }
+            Arrays.sort(sorted, (a, b) -> scores[a] != scores[b] ? Double.compare(scores[b], scores[a]) : Integer.compare(a, b));
+            int[] expected = Arrays.stream(sorted).limit(k).mapToInt(Integer::intValue).toArray();
+            assertArrayEquals(expected, top.ranked(), "trial " + trial);
+        }
+    }
+}